@@ -38,9 +38,7 @@ import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
@@ -48,7 +46,7 @@ import java.util.stream.IntStream;
 /**
  * Interface for defining the setup procedure of a batch run and the corresponding parameter class.
  * The batch runner will create the cross-product of all possible parameters configuration and prepare
- * the config for each.
+ * the config for each, when the run is accessed.
  *
  * @param <T> Class holding the available parameters.
  */
@@ -62,6 +60,17 @@ public interface BatchRun<T> {
 	 * @param <T>        params type
 	 */
 	static <T> PreparedRun prepare(Class<? extends BatchRun<T>> clazz, Class<T> paramClazz) {
+		return prepare(clazz, paramClazz, 0);
+	}
+
+	/**
+	 * Same as {@link #prepare(Class, Class)}, but only prepares a sample of the parameter combinations, which is drawn
+	 * by latin hypercube sampling. Every value of each parameter is used about equally often.
+	 * The sample is always the same for the same parameters.
+	 *
+	 * @param samples number of combinations to sample, 0 to use all combinations
+	 */
+	static <T> PreparedRun prepare(Class<? extends BatchRun<T>> clazz, Class<T> paramClazz, int samples) {
 
 		Logger log = LogManager.getLogger(BatchRun.class);
 		List<Field> fields = new ArrayList<>();
@@ -85,7 +94,6 @@ public interface BatchRun<T> {
 			}
 		}
 
-		List<PreparedRun.Run> runs = new ArrayList<>();
 		BatchRun<T> setup;
 		try {
 			setup = clazz.getDeclaredConstructor().newInstance();
@@ -95,33 +103,91 @@ public interface BatchRun<T> {
 		}
 
 		Config base = setup.baseCase(0);
-		if (base != null)
-			runs.add(new PreparedRun.Run(0, Lists.newArrayList("base"), base));
 
-		List<List<Object>> combinations = Lists.cartesianProduct(Lists.newArrayList(allParams));
+		List<List<Object>> cartesian = Lists.cartesianProduct(Lists.newArrayList(allParams));
+		List<List<Object>> combinations = samples > 0 && samples < cartesian.size() ?
+				sampleLatinHypercube(allParams, samples, new SplittableRandom(samples)) : cartesian;
+
+		// configs are only created when a run is accessed, the combinations of the cartesian product are also computed by index
+		int offset = base != null ? 1 : 0;
+		List<PreparedRun.Run> runs = new AbstractList<>() {
+			@Override
+			public PreparedRun.Run get(int index) {
+				if (index < offset)
+					return new PreparedRun.Run(0, Lists.newArrayList("base"), () -> base);
+
+				int id = index - offset + 1;
+				List<Object> params = combinations.get(index - offset);
+				return new PreparedRun.Run(id, params, () -> createConfig(setup, paramClazz, fields, id, params));
+			}
+
+			@Override
+			public int size() {
+				return combinations.size() + offset;
+			}
+		};
+
+		log.info("Prepared {} runs for {} with params {}", runs.size(), clazz.getSimpleName(), paramClazz.getName());
+
+		return new PreparedRun(setup, fields.stream().map(Field::getName).collect(Collectors.toList()), allParams, runs);
+	}
+
+	/**
+	 * Creates the config of one run.
+	 */
+	private static <T> Config createConfig(BatchRun<T> setup, Class<T> paramClazz, List<Field> fields, int id, List<Object> params) {
+		try {
+			T inst = paramClazz.getDeclaredConstructor().newInstance();
+			for (int i = 0; i < params.size(); i++) {
+				fields.get(i).setAccessible(true);
+				fields.get(i).set(inst, params.get(i));
+			}
+
+			// setups are not expected to be thread-safe
+			synchronized (setup) {
+				return setup.prepareConfig(id, inst);
+			}
 
-		int id = 0;
-		for (List<Object> params : combinations) {
+		} catch (ReflectiveOperationException e) {
+			LogManager.getLogger(BatchRun.class).error("Could not create param class", e);
+			throw new IllegalArgumentException(e);
+		}
+	}
 
-			try {
-				T inst = paramClazz.getDeclaredConstructor().newInstance();
-				for (int i = 0; i < params.size(); i++) {
-					fields.get(i).setAccessible(true);
-					fields.get(i).set(inst, params.get(i));
-				}
+	/**
+	 * Draws combinations of parameter values, so that each parameter is stratified into {@code samples} intervals which are
+	 * all used once. Duplicates are removed, therefore fewer combinations may be returned.
+	 */
+	private static List<List<Object>> sampleLatinHypercube(List<List<Object>> allParams, int samples, SplittableRandom rnd) {
 
-				Config config = setup.prepareConfig(++id, inst);
-				runs.add(new PreparedRun.Run(id, params, config));
+		List<List<Object>> combinations = new ArrayList<>();
+		for (int i = 0; i < samples; i++)
+			combinations.add(new ArrayList<>());
 
-			} catch (ReflectiveOperationException e) {
-				log.error("Could not create param class", e);
-				throw new IllegalArgumentException(e);
+		for (List<Object> values : allParams) {
+
+			List<Integer> strata = IntStream.range(0, samples).boxed().collect(Collectors.toList());
+			Collections.shuffle(strata, new Random(rnd.nextLong()));
+
+			for (int i = 0; i < samples; i++) {
+				int idx = (int) ((strata.get(i) + rnd.nextDouble()) * values.size() / samples);
+				combinations.get(i).add(values.get(idx));
 			}
 		}
 
-		log.info("Prepared {} runs for {} with params {}", runs.size(), clazz.getSimpleName(), paramClazz.getName());
+		return new ArrayList<>(new LinkedHashSet<>(combinations));
+	}
 
-		return new PreparedRun(setup, fields.stream().map(Field::getName).collect(Collectors.toList()), allParams, runs);
+	/**
+	 * Score of a run after it has been simulated up to a certain day, which is used by the adaptive search to decide
+	 * which runs are continued. Runs with a higher score are continued first, e.g. setups used for calibration should return
+	 * the negative distance to their target. There is no default score, setups have to implement this to use the adaptive search.
+	 *
+	 * @param report infection statistics of the last simulated day
+	 * @return {@link Double#NaN} if not implemented
+	 */
+	default double score(PreparedRun.Run run, EpisimReporting.InfectionReport report) {
+		return Double.NaN;
 	}
 
 	/**
@@ -0,0 +1,229 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+import org.matsim.episim.reporting.EpisimWriter;
+
+import java.io.BufferedWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates reported contacts into dense tables, which are written once per day instead of single contact events.
+ * <p>
+ * Tables are written as rows of {@code day, table, a, b, contacts, duration}:
+ * <ul>
+ *     <li>{@code activity}: activity of the person and of the contact person</li>
+ *     <li>{@code age}: age group of the person and of the contact person</li>
+ *     <li>{@code district}: district of the person</li>
+ *     <li>{@code duration}: activity of the person and upper bound of the duration bin in minutes</li>
+ * </ul>
+ * Only non empty cells are written, durations are summed in seconds.
+ */
+final class ContactAggregator implements EpisimListener {
+
+	/**
+	 * Size of age groups in years, the last group contains all older persons.
+	 */
+	private static final int AGE_GROUP_SIZE = 10;
+	private static final int AGE_GROUPS = 10;
+	/**
+	 * Index of persons without age.
+	 */
+	private static final int AGE_UNKNOWN = AGE_GROUPS;
+
+	/**
+	 * Width of duration bins in seconds.
+	 */
+	private static final int DURATION_BIN = 15 * 60;
+	private static final int DURATION_BINS = 86400 / DURATION_BIN;
+
+	private final EpisimConfigGroup episimConfig;
+	private final BufferedWriter out;
+
+	/**
+	 * Names of the activities as defined by the infection params.
+	 */
+	private final List<String> activities;
+	private final MutableObjectIntMap<String> activityIndex = new ObjectIntHashMap<>();
+
+	/**
+	 * Cache of the activity index for all activity and vehicle names that occurred.
+	 */
+	private final MutableObjectIntMap<String> nameCache = new ObjectIntHashMap<>();
+
+	private final int nAct;
+	private final long[] actCount;
+	private final double[] actDuration;
+	private final long[] ageCount = new long[(AGE_GROUPS + 1) * (AGE_GROUPS + 1)];
+	private final double[] ageDuration = new double[(AGE_GROUPS + 1) * (AGE_GROUPS + 1)];
+	private final long[] durationCount;
+	private final double[] durationSum;
+	private long[] districtCount = new long[16];
+	private double[] districtDuration = new double[16];
+
+	ContactAggregator(EpisimConfigGroup episimConfig, BufferedWriter out) {
+		this.episimConfig = episimConfig;
+		this.out = out;
+		this.activities = new ArrayList<>(episimConfig.createInitialRestrictions().keySet());
+
+		for (String act : activities)
+			activityIndex.put(act, activityIndex.size());
+
+		nAct = activities.size();
+		actCount = new long[nAct * nAct];
+		actDuration = new double[nAct * nAct];
+		durationCount = new long[nAct * DURATION_BINS];
+		durationSum = new double[nAct * DURATION_BINS];
+	}
+
+	/**
+	 * Creates the output file and writes the header.
+	 */
+	static BufferedWriter prepare(String filename) {
+		return EpisimWriter.prepare(filename, Columns.class);
+	}
+
+	@Override
+	public void onContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+						  CharSequence actType, double duration, double infectionProb) {
+
+		int act = getActivity(person, container);
+		int contactAct = getActivity(contactPerson, container);
+
+		int i = act * nAct + contactAct;
+		actCount[i]++;
+		actDuration[i] += duration;
+
+		i = getAgeGroup(person) * (AGE_GROUPS + 1) + getAgeGroup(contactPerson);
+		ageCount[i]++;
+		ageDuration[i] += duration;
+
+		int district = person.getDistrictIndex();
+		if (district >= 0) {
+			if (district >= districtCount.length) {
+				districtCount = Arrays.copyOf(districtCount, Math.max(district + 1, districtCount.length * 2));
+				districtDuration = Arrays.copyOf(districtDuration, districtCount.length);
+			}
+
+			districtCount[district]++;
+			districtDuration[district] += duration;
+		}
+
+		int bin = Math.min((int) (duration / DURATION_BIN), DURATION_BINS - 1);
+		i = act * DURATION_BINS + bin;
+		durationCount[i]++;
+		durationSum[i] += duration;
+	}
+
+	private int getActivity(EpisimPerson person, EpisimContainer<?> container) {
+
+		// activities in vehicles are determined by the vehicle id
+		String name = container instanceof InfectionEventHandler.EpisimVehicle ? container.getContainerId().toString()
+				: person.getTrajectory().get(person.getCurrentPositionInTrajectory());
+
+		int idx = nameCache.getIfAbsent(name, -1);
+		if (idx == -1) {
+			idx = activityIndex.get(episimConfig.selectInfectionParams(name).getContainerName());
+			nameCache.put(name, idx);
+		}
+
+		return idx;
+	}
+
+	private static int getAgeGroup(EpisimPerson person) {
+		Object age = person.getAttributes().getAttribute("age");
+		if (!(age instanceof Number)) return AGE_UNKNOWN;
+
+		return Math.max(0, Math.min(((Number) age).intValue() / AGE_GROUP_SIZE, AGE_GROUPS - 1));
+	}
+
+	/**
+	 * Write all tables for one day and reset the counts.
+	 *
+	 * @param districts names of the districts by their index
+	 */
+	void write(EpisimWriter writer, long day, List<String> districts) {
+
+		String d = String.valueOf(day);
+
+		for (int i = 0; i < actCount.length; i++) {
+			if (actCount[i] > 0)
+				writeRow(writer, d, "activity", activities.get(i / nAct), activities.get(i % nAct), actCount[i], actDuration[i]);
+		}
+
+		for (int i = 0; i < ageCount.length; i++) {
+			if (ageCount[i] > 0)
+				writeRow(writer, d, "age", ageGroupName(i / (AGE_GROUPS + 1)), ageGroupName(i % (AGE_GROUPS + 1)), ageCount[i], ageDuration[i]);
+		}
+
+		for (int i = 0; i < districtCount.length; i++) {
+			if (districtCount[i] > 0)
+				writeRow(writer, d, "district", districts.get(i), "", districtCount[i], districtDuration[i]);
+		}
+
+		for (int i = 0; i < durationCount.length; i++) {
+			if (durationCount[i] > 0)
+				writeRow(writer, d, "duration", activities.get(i / DURATION_BINS),
+						String.valueOf((i % DURATION_BINS + 1) * DURATION_BIN / 60), durationCount[i], durationSum[i]);
+		}
+
+		Arrays.fill(actCount, 0);
+		Arrays.fill(actDuration, 0);
+		Arrays.fill(ageCount, 0);
+		Arrays.fill(ageDuration, 0);
+		Arrays.fill(districtCount, 0);
+		Arrays.fill(districtDuration, 0);
+		Arrays.fill(durationCount, 0);
+		Arrays.fill(durationSum, 0);
+	}
+
+	private void writeRow(EpisimWriter writer, String day, String table, String a, String b, long count, double duration) {
+		String[] row = new String[Columns.values().length];
+		row[Columns.day.ordinal()] = day;
+		row[Columns.table.ordinal()] = table;
+		row[Columns.a.ordinal()] = a;
+		row[Columns.b.ordinal()] = b;
+		row[Columns.contacts.ordinal()] = String.valueOf(count);
+		row[Columns.duration.ordinal()] = String.valueOf(duration);
+
+		writer.append(out, row);
+	}
+
+	private static String ageGroupName(int group) {
+		if (group == AGE_UNKNOWN) return "unknown";
+		if (group == AGE_GROUPS - 1) return (group * AGE_GROUP_SIZE) + "+";
+
+		return (group * AGE_GROUP_SIZE) + "-" + ((group + 1) * AGE_GROUP_SIZE - 1);
+	}
+
+	BufferedWriter getOutput() {
+		return out;
+	}
+
+	enum Columns {
+		day, table, a, b, contacts, duration
+	}
+
+}
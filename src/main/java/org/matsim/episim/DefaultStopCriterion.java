@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.inject.Inject;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Default stop criteria, which are configured in the {@link EpisimConfigGroup} and are all disabled by default.
+ */
+public final class DefaultStopCriterion implements StopCriterion {
+
+	/**
+	 * Number of days the incidence is computed for.
+	 */
+	static final int INCIDENCE_DAYS = 7;
+
+	private final EpisimConfigGroup episimConfig;
+	private final long start = System.nanoTime();
+
+	/**
+	 * Cumulative number of infections and the day it was last changed.
+	 */
+	private long cumulative = 0;
+	private int lastChange;
+
+	/**
+	 * Cumulative infections of the previous days, the oldest first.
+	 */
+	private final Deque<Long> previous = new ArrayDeque<>();
+
+	@Inject
+	public DefaultStopCriterion(Config config) {
+		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+	}
+
+	@Nullable
+	@Override
+	public String check(EpisimReporting.InfectionReport report, int day) {
+
+		double fraction = episimConfig.getStopInfectedFraction();
+		if (fraction > 0 && report.nTotal() > 0 && report.nTotalInfected >= fraction * report.nTotal())
+			return String.format("infected fraction %.3f reached %s", (double) report.nTotalInfected / report.nTotal(), fraction);
+
+		long infections = report.nTotalInfected + report.nRecovered;
+
+		// there are no infections before the first day
+		long before = previous.size() == INCIDENCE_DAYS ? previous.removeFirst() : 0;
+		previous.addLast(infections);
+
+		double threshold = episimConfig.getStopIncidence();
+		double incidence = report.nTotal() > 0 ? (infections - before) * 100_000d / report.nTotal() : 0;
+		if (threshold > 0 && incidence >= threshold)
+			return String.format("%d-day incidence %.1f reached %s", INCIDENCE_DAYS, incidence, threshold);
+
+		long capacity = episimConfig.getStopHospitalCapacity();
+		if (capacity > 0 && report.nSeriouslySick + report.nCritical > capacity)
+			return String.format("%d persons in hospital exceed capacity of %d", report.nSeriouslySick + report.nCritical, capacity);
+
+		if (infections != cumulative) {
+			cumulative = infections;
+			lastChange = day;
+		}
+
+		// plateau days are only counted once the epidemic has started
+		int plateau = episimConfig.getStopPlateauDays();
+		if (plateau > 0 && cumulative > 0 && day - lastChange >= plateau)
+			return String.format("no new infections for %d days", day - lastChange);
+
+		long wallTime = episimConfig.getStopWallTime();
+		long elapsed = (System.nanoTime() - start) / 1_000_000_000L;
+		if (wallTime > 0 && elapsed >= wallTime)
+			return String.format("wall time of %d seconds exceeded", wallTime);
+
+		return null;
+	}
+
+	/**
+	 * Writes the infections of the previous days, the wall time is not stored and starts again when resumed.
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(cumulative);
+		out.writeInt(lastChange);
+		out.writeInt(previous.size());
+		for (long infections : previous)
+			out.writeLong(infections);
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		cumulative = in.readLong();
+		lastChange = in.readInt();
+		previous.clear();
+		int n = in.readInt();
+		for (int i = 0; i < n; i++)
+			previous.addLast(in.readLong());
+	}
+}
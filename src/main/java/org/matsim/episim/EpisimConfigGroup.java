@@ -46,12 +46,24 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 
 	private static final String INPUT_EVENTS_FILE = "inputEventsFile";
 	private static final String WRITE_EVENTS = "writeEvents";
+	private static final String EVENTS_FORMAT = "eventsFormat";
+	private static final String EVENT_COMPRESSION_THREADS = "eventCompressionThreads";
 	private static final String CALIBRATION_PARAMETER = "calibrationParameter";
 	private static final String INITIAL_INFECTIONS = "initialInfections";
 	private static final String INITIAL_INFECTION_DISTRICT = "initialInfectionDistrict";
 	private static final String INITIAL_START_INFECTIONS = "initialStartInfections";
 	private static final String MASK_COMPLIANCE = "maskCompliance";
 	private static final String SAMPLE_SIZE = "sampleSize";
+	private static final String CHECK_REPORT_COUNTS = "checkReportCounts";
+	private static final String AGGREGATE_CONTACTS = "aggregateContacts";
+	private static final String WRITE_PERFORMANCE = "writePerformance";
+	private static final String ANALYZE_WORKLOAD = "analyzeWorkload";
+	private static final String CHECKPOINT_INTERVAL = "checkpointInterval";
+	private static final String STOP_INFECTED_FRACTION = "stopInfectedFraction";
+	private static final String STOP_INCIDENCE = "stopIncidence";
+	private static final String STOP_HOSPITAL_CAPACITY = "stopHospitalCapacity";
+	private static final String STOP_PLATEAU_DAYS = "stopPlateauDays";
+	private static final String STOP_WALL_TIME = "stopWallTime";
 
 	private static final Logger log = LogManager.getLogger(EpisimConfigGroup.class);
 	private static final String GROUPNAME = "episim";
@@ -64,6 +76,14 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	 * Which events to write in the output.
 	 */
 	private WriteEvents writeEvents = WriteEvents.episim;
+	/**
+	 * File format of the written events.
+	 */
+	private EventsFormat eventsFormat = EventsFormat.xml;
+	/**
+	 * Number of blocks of xml event files that are compressed in parallel, 0 uses one single gzip stream.
+	 */
+	private int eventCompressionThreads = 0;
 
 	// this is current default for 25% scenarios
 	private double calibrationParameter = 0.000002;
@@ -75,6 +95,46 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	 * If not null, filter persons for initial infection by district.
 	 */
 	private String initialInfectionDistrict = null;
+	/**
+	 * Debug option to verify the incrementally maintained report counts against a full recount of the population.
+	 */
+	private boolean checkReportCounts = false;
+	/**
+	 * Write daily contact tables instead of requiring contact events for analysis.
+	 */
+	private boolean aggregateContacts = false;
+	/**
+	 * Measure time spent in each phase of the simulation.
+	 */
+	private boolean writePerformance = false;
+	/**
+	 * Analyze container occupancy and dwell times on the first simulated day.
+	 */
+	private boolean analyzeWorkload = false;
+	/**
+	 * Days between checkpoints of the simulation state, 0 disables checkpoints.
+	 */
+	private int checkpointInterval = 0;
+	/**
+	 * Fraction of currently infected persons at which the simulation is stopped, 0 disables the criterion.
+	 */
+	private double stopInfectedFraction = 0;
+	/**
+	 * New infections within the last seven days per 100,000 persons at which the simulation is stopped, 0 disables the criterion.
+	 */
+	private double stopIncidence = 0;
+	/**
+	 * Number of seriously sick and critical persons at which the simulation is stopped, 0 disables the criterion.
+	 */
+	private long stopHospitalCapacity = 0;
+	/**
+	 * Days without new infections after which the simulation is stopped, 0 disables the criterion.
+	 */
+	private int stopPlateauDays = 0;
+	/**
+	 * Maximum wall time of the simulation in seconds, 0 disables the criterion.
+	 */
+	private long stopWallTime = 0;
 
 	private FacilitiesHandling facilitiesHandling = FacilitiesHandling.snz;
 	private Config policyConfig = ConfigFactory.empty();
@@ -108,6 +168,29 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.writeEvents = writeEvents;
 	}
 
+	@StringGetter(EVENTS_FORMAT)
+	public EventsFormat getEventsFormat() {
+		return eventsFormat;
+	}
+
+	@StringSetter(EVENTS_FORMAT)
+	public void setEventsFormat(EventsFormat eventsFormat) {
+		this.eventsFormat = eventsFormat;
+	}
+
+	@StringGetter(EVENT_COMPRESSION_THREADS)
+	public int getEventCompressionThreads() {
+		return eventCompressionThreads;
+	}
+
+	/**
+	 * Compress xml event files in blocks on multiple threads, see {@link org.matsim.episim.reporting.ParallelGzipOutputStream}.
+	 */
+	@StringSetter(EVENT_COMPRESSION_THREADS)
+	public void setEventCompressionThreads(int eventCompressionThreads) {
+		this.eventCompressionThreads = eventCompressionThreads;
+	}
+
 	@StringGetter(CALIBRATION_PARAMETER)
 	public double getCalibrationParameter() {
 		return this.calibrationParameter;
@@ -171,6 +254,139 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.sampleSize = sampleSize;
 	}
 
+	@StringGetter(CHECK_REPORT_COUNTS)
+	public boolean isCheckReportCounts() {
+		return checkReportCounts;
+	}
+
+	/**
+	 * Enable the cross-check of live report counts against a full recount every day. This is slow and only meant for debugging.
+	 */
+	@StringSetter(CHECK_REPORT_COUNTS)
+	public void setCheckReportCounts(boolean checkReportCounts) {
+		this.checkReportCounts = checkReportCounts;
+	}
+
+	@StringGetter(AGGREGATE_CONTACTS)
+	public boolean isAggregateContacts() {
+		return aggregateContacts;
+	}
+
+	/**
+	 * Aggregate all reported contacts in memory and write one table per day to {@code contacts.txt}.
+	 */
+	@StringSetter(AGGREGATE_CONTACTS)
+	public void setAggregateContacts(boolean aggregateContacts) {
+		this.aggregateContacts = aggregateContacts;
+	}
+
+	@StringGetter(WRITE_PERFORMANCE)
+	public boolean isWritePerformance() {
+		return writePerformance;
+	}
+
+	/**
+	 * Write time spent in each phase and work done per day to {@code performance.tsv}, see {@link PerformanceMonitor}.
+	 */
+	@StringSetter(WRITE_PERFORMANCE)
+	public void setWritePerformance(boolean writePerformance) {
+		this.writePerformance = writePerformance;
+	}
+
+	@StringGetter(ANALYZE_WORKLOAD)
+	public boolean isAnalyzeWorkload() {
+		return analyzeWorkload;
+	}
+
+	/**
+	 * Write container occupancy, dwell times and estimated costs of the infection model per container class to {@code workload.tsv}.
+	 * The statistics are collected on iteration 1, when all containers are populated including stationary agents.
+	 */
+	@StringSetter(ANALYZE_WORKLOAD)
+	public void setAnalyzeWorkload(boolean analyzeWorkload) {
+		this.analyzeWorkload = analyzeWorkload;
+	}
+
+	@StringGetter(CHECKPOINT_INTERVAL)
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * Write the complete simulation state every n days to the {@code checkpoints} directory, so that an interrupted run
+	 * can be resumed with identical results. Only the latest checkpoint is kept. 0 disables checkpoints.
+	 */
+	@StringSetter(CHECKPOINT_INTERVAL)
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	@StringGetter(STOP_INFECTED_FRACTION)
+	public double getStopInfectedFraction() {
+		return stopInfectedFraction;
+	}
+
+	/**
+	 * Stop the simulation when this fraction of the population is infected at the same time. 0 disables this criterion.
+	 */
+	@StringSetter(STOP_INFECTED_FRACTION)
+	public void setStopInfectedFraction(double stopInfectedFraction) {
+		this.stopInfectedFraction = stopInfectedFraction;
+	}
+
+	@StringGetter(STOP_INCIDENCE)
+	public double getStopIncidence() {
+		return stopIncidence;
+	}
+
+	/**
+	 * Stop the simulation when the new infections of the last seven days per 100,000 persons reach this value. 0 disables this criterion.
+	 */
+	@StringSetter(STOP_INCIDENCE)
+	public void setStopIncidence(double stopIncidence) {
+		this.stopIncidence = stopIncidence;
+	}
+
+	@StringGetter(STOP_HOSPITAL_CAPACITY)
+	public long getStopHospitalCapacity() {
+		return stopHospitalCapacity;
+	}
+
+	/**
+	 * Stop the simulation when more persons are seriously sick or critical than this capacity, scaled to the full population.
+	 * 0 disables this criterion.
+	 */
+	@StringSetter(STOP_HOSPITAL_CAPACITY)
+	public void setStopHospitalCapacity(long stopHospitalCapacity) {
+		this.stopHospitalCapacity = stopHospitalCapacity;
+	}
+
+	@StringGetter(STOP_PLATEAU_DAYS)
+	public int getStopPlateauDays() {
+		return stopPlateauDays;
+	}
+
+	/**
+	 * Stop the simulation when the cumulative number of infections has not changed for this many days. 0 disables this criterion.
+	 */
+	@StringSetter(STOP_PLATEAU_DAYS)
+	public void setStopPlateauDays(int stopPlateauDays) {
+		this.stopPlateauDays = stopPlateauDays;
+	}
+
+	@StringGetter(STOP_WALL_TIME)
+	public long getStopWallTime() {
+		return stopWallTime;
+	}
+
+	/**
+	 * Stop the simulation at the beginning of the next day, after it has been running for this many seconds. 0 disables this criterion.
+	 */
+	@StringSetter(STOP_WALL_TIME)
+	public void setStopWallTime(long stopWallTime) {
+		this.stopWallTime = stopWallTime;
+	}
+
 	@StringGetter("policyClass")
 	public String getPolicyClass() {
 		return policyClass.getName();
@@ -416,7 +632,27 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		/**
 		 * Write all, including input events.
 		 */
-		all
+		all,
+		/**
+		 * Write the same events as {@link #tracing}, together with the position of each event in the input stream.
+		 * Input events are only referenced in a manifest and can be merged back with {@link org.matsim.episim.reporting.MergedEventReader}.
+		 */
+		reference
+	}
+
+	/**
+	 * Defines the file format of the written events.
+	 */
+	public enum EventsFormat {
+		/**
+		 * Gzipped xml files, readable by MATSim.
+		 */
+		xml,
+		/**
+		 * Compact binary log, see {@link org.matsim.episim.reporting.BinaryEventWriter}.
+		 * Can be converted to xml with {@link org.matsim.run.ConvertEvents}.
+		 */
+		binary
 	}
 
 	/**
@@ -28,8 +28,12 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.gbl.Gbl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 
 /**
@@ -101,6 +105,30 @@ public class EpisimContainer<T> {
 		return persons.get(personId.index());
 	}
 
+	/**
+	 * Writes the contained persons in their current order, together with their entering times.
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(personsAsList.size());
+		for (EpisimPerson person : personsAsList) {
+			out.writeUTF(person.getPersonId().toString());
+			out.writeDouble(getContainerEnteringTime(person.getPersonId()));
+		}
+	}
+
+	/**
+	 * Restores the persons written by {@link #write(DataOutput)}, keeping their order.
+	 *
+	 * @param persons lookup of persons by their id
+	 */
+	void read(DataInput in, Function<String, EpisimPerson> persons) throws IOException {
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			EpisimPerson person = persons.apply(in.readUTF());
+			addPerson(person, in.readDouble());
+		}
+	}
+
 	public List<EpisimPerson> getPersons() {
 		// Using Collections.unmodifiableList(...) puts huge pressure on the GC if its called hundred thousand times per second
 		return personsAsList;
@@ -0,0 +1,72 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.inject.Inject;
+
+import java.util.Arrays;
+
+/**
+ * Dispatches episim events to registered {@link EpisimListener}s, independent of the MATSim {@link org.matsim.core.api.experimental.events.EventsManager}
+ * that is used to replay the input events.
+ * Dispatching is skipped entirely when no listener is registered.
+ */
+public final class EpisimEventBus {
+
+	private volatile EpisimListener[] listeners = new EpisimListener[0];
+
+	@Inject
+	public EpisimEventBus() {
+	}
+
+	/**
+	 * Register a new listener, which will receive all following events.
+	 */
+	public synchronized void addListener(EpisimListener listener) {
+		EpisimListener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+		copy[listeners.length] = listener;
+		listeners = copy;
+	}
+
+	/**
+	 * Whether there are any listeners registered.
+	 */
+	public boolean hasListeners() {
+		return listeners.length > 0;
+	}
+
+	void fireStatusChange(double now, EpisimPerson person, EpisimPerson.DiseaseStatus status) {
+		for (EpisimListener listener : listeners)
+			listener.onStatusChange(now, person, status);
+	}
+
+	void fireInfection(double now, EpisimPerson person, EpisimPerson infector, EpisimContainer<?> container, String infectionType) {
+		for (EpisimListener listener : listeners)
+			listener.onInfection(now, person, infector, container, infectionType);
+	}
+
+	void fireContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+					 CharSequence actType, double duration, double infectionProb) {
+		for (EpisimListener listener : listeners)
+			listener.onContact(now, person, contactPerson, container, actType, duration, infectionProb);
+	}
+
+}
@@ -0,0 +1,55 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+/**
+ * Listener for events generated by episim itself, see {@link EpisimEventBus}.
+ * Callbacks receive the involved objects directly, so no event objects need to be created.
+ * All methods do nothing by default.
+ */
+public interface EpisimListener {
+
+	/**
+	 * Called when the disease status of a person has changed.
+	 */
+	default void onStatusChange(double now, EpisimPerson person, EpisimPerson.DiseaseStatus status) {
+	}
+
+	/**
+	 * Called when a person was infected.
+	 *
+	 * @param container     container where the infection took place
+	 * @param infectionType activities of both persons
+	 */
+	default void onInfection(double now, EpisimPerson person, EpisimPerson infector, EpisimContainer<?> container, String infectionType) {
+	}
+
+	/**
+	 * Called for a contact between two persons.
+	 *
+	 * @param actType  activities of both persons, only valid during this call
+	 * @param duration duration of the contact in seconds
+	 */
+	default void onContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+						   CharSequence actType, double duration, double infectionProb) {
+	}
+
+}
@@ -57,6 +57,12 @@ public class EpisimModule extends AbstractModule {
 		bind(ReplayHandler.class).in(Singleton.class);
 		bind(InfectionEventHandler.class).in(Singleton.class);
 		bind(EpisimReporting.class).in(Singleton.class);
+		bind(EpisimEventBus.class).in(Singleton.class);
+		bind(PerformanceMonitor.class).in(Singleton.class);
+		bind(LiveMetrics.class).in(Singleton.class);
+		bind(HouseholdIndex.class).in(Singleton.class);
+		bind(PopulationSkeleton.class).in(Singleton.class);
+		bind(StopCriterion.class).to(DefaultStopCriterion.class).in(Singleton.class);
 
 		// Ah, ok, here one sees how it is plugged together.  kai, apr'20
 	}
@@ -21,18 +21,22 @@
 package org.matsim.episim;
 
 import com.google.common.annotations.Beta;
-import org.eclipse.collections.api.map.primitive.MutableObjectDoubleMap;
 import org.eclipse.collections.impl.map.mutable.primitive.ObjectDoubleHashMap;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.episim.events.EpisimPersonStatusEvent;
 import org.matsim.utils.objectattributes.attributable.Attributable;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.EnumMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -48,18 +52,28 @@ public final class EpisimPerson implements Attributable {
 	private final Id<Person> personId;
 	private final EpisimReporting reporting;
 	private final Attributes attributes;
-	private final ObjectDoubleHashMap<EpisimPerson> traceableContactPersons = new ObjectDoubleHashMap<>();
-	private final List<String> trajectory = new ArrayList<>();
+	/**
+	 * Traced contacts with their latest contact time. Only created when the first contact is traced, because most persons
+	 * never have one and the map makes up a large part of the memory per person.
+	 */
+	@Nullable
+	private ObjectDoubleHashMap<EpisimPerson> traceableContactPersons;
+
+	/**
+	 * Activities of the day, which are recorded on the first day and shared with {@link PopulationSkeleton} afterwards.
+	 */
+	private List<String> trajectory = new ArrayList<>();
 
 	/**
-	 * Stores first time of status changes to specific type.
+	 * Marker for a status that was never set.
 	 */
-	private final EnumMap<DiseaseStatus, Double> statusChanges = new EnumMap<>(DiseaseStatus.class);
+	private static final int NEVER = Integer.MIN_VALUE;
 
 	/**
-	 * Total spent time during activities.
+	 * Stores the day of the first status change to specific type, indexed by {@link DiseaseStatus#ordinal()}.
+	 * Contains {@link #NEVER} for status that were not set yet.
 	 */
-	private final MutableObjectDoubleMap<String> spentTime = new ObjectDoubleHashMap<>();
+	private final int[] statusChanges = createStatusChanges();
 
 	/**
 	 * The {@link EpisimContainer} the person is currently located in.
@@ -79,11 +93,30 @@ public final class EpisimPerson implements Attributable {
 	 */
 	private int quarantineDate = -1;
 	private int currentPositionInTrajectory;
+	/**
+	 * Index of the district this person is counted in by {@link EpisimReporting}, negative if not registered.
+	 */
+	private int districtIndex = -1;
+	/**
+	 * Index of the household in {@link HouseholdIndex}, negative if the person has no household.
+	 */
+	private int household = -1;
 	/**
 	 * The last visited {@link org.matsim.facilities.ActivityFacility}.
 	 */
 	private String lastFacilityId;
 	private String firstFacilityId;
+	/**
+	 * Whether the person can be traced, takes precedence over {@link #TRACING_ATTR} if set.
+	 * It is stored here, because attributes may be shared between simulations.
+	 */
+	private Boolean traceable;
+
+	private static int[] createStatusChanges() {
+		int[] changes = new int[DiseaseStatus.values().length];
+		Arrays.fill(changes, NEVER);
+		return changes;
+	}
 
 	EpisimPerson(Id<Person> personId, Attributes attrs, EpisimReporting reporting) {
 		this.personId = personId;
@@ -100,11 +133,12 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setDiseaseStatus(double now, DiseaseStatus status) {
+		reporting.updateDiseaseStatusCount(this, this.status, status);
 		this.status = status;
-		if (!statusChanges.containsKey(status))
-			statusChanges.put(status, now);
+		if (statusChanges[status.ordinal()] == NEVER)
+			statusChanges[status.ordinal()] = (int) Math.floor(now / 86400d);
 
-		reporting.reportPersonStatus(this, new EpisimPersonStatusEvent(now, personId, status));
+		reporting.reportPersonStatus(now, this, status);
 	}
 
 	public QuarantineStatus getQuarantineStatus() {
@@ -112,6 +146,7 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setQuarantineStatus(QuarantineStatus quarantineStatus, int iteration) {
+		reporting.updateQuarantineStatusCount(this, this.quarantineStatus, quarantineStatus);
 		this.quarantineStatus = quarantineStatus;
 		this.quarantineDate = iteration;
 	}
@@ -126,11 +161,10 @@ public final class EpisimPerson implements Attributable {
 	 * @throws IllegalStateException when the requested status was never set
 	 */
 	public int daysSince(DiseaseStatus status, int currentDay) {
-		if (!statusChanges.containsKey(status)) throw new IllegalStateException("Person was never " + status);
-
-		double day = Math.floor(statusChanges.get(status) / 86400d);
+		int day = statusChanges[status.ordinal()];
+		if (day == NEVER) throw new IllegalStateException("Person was never " + status);
 
-		return currentDay - (int) day;
+		return currentDay - day;
 	}
 
 	/**
@@ -149,6 +183,25 @@ public final class EpisimPerson implements Attributable {
 		return currentDay - quarantineDate;
 	}
 
+	int getDistrictIndex() {
+		return districtIndex;
+	}
+
+	void setDistrictIndex(int districtIndex) {
+		this.districtIndex = districtIndex;
+	}
+
+	/**
+	 * Returns the index of this person's household in {@link HouseholdIndex}, or -1 if unknown.
+	 */
+	public int getHousehold() {
+		return household;
+	}
+
+	void setHousehold(int household) {
+		this.household = household;
+	}
+
 	int getQuarantineDate() {
 		return this.quarantineDate;
 	}
@@ -163,15 +216,22 @@ public final class EpisimPerson implements Attributable {
 
 	public void addTraceableContactPerson(EpisimPerson personWrapper, double now) {
 		// check if both persons have tracing capability
-		if (isTraceable() && personWrapper.isTraceable())
+		if (isTraceable() && personWrapper.isTraceable()) {
+			if (traceableContactPersons == null)
+				traceableContactPersons = new ObjectDoubleHashMap<>();
+
 			// Always use the latest tracking date
 			traceableContactPersons.put(personWrapper, now);
+		}
 	}
 
 	/**
 	 * Get all traced contacts that happened after certain time.
 	 */
 	public Set<EpisimPerson> getTraceableContactPersons(double after) {
+		if (traceableContactPersons == null)
+			return new HashSet<>();
+
 		return traceableContactPersons.keySet()
 				.stream().filter(k -> traceableContactPersons.get(k) >= after)
 				.collect(Collectors.toSet());
@@ -181,23 +241,37 @@ public final class EpisimPerson implements Attributable {
 	 * Remove old contact tracing data before a certain date.
 	 */
 	public void clearTraceableContractPersons(double before) {
-		traceableContactPersons.keySet().removeIf(k -> traceableContactPersons.get(k) < before);
+		if (traceableContactPersons != null)
+			traceableContactPersons.keySet().removeIf(k -> traceableContactPersons.get(k) < before);
 	}
 
 
 	/**
-	 * Returns whether the person can be traced. When {@link #TRACING_ATTR} is not set it is always true.
+	 * Returns whether the person can be traced. When neither {@link #setTraceable(boolean)} was called nor {@link #TRACING_ATTR} is set it is always true.
 	 */
 	public boolean isTraceable() {
+		if (traceable != null) return traceable;
+
 		Boolean tracing = (Boolean) attributes.getAttribute(TRACING_ATTR);
 		if (tracing ==  null) return true;
 		return tracing;
 	}
 
+	void setTraceable(boolean traceable) {
+		this.traceable = traceable;
+	}
+
 	void addToTrajectory(String trajectoryElement) {
 		trajectory.add(trajectoryElement);
 	}
 
+	/**
+	 * Replaces the trajectory with the equal instance of the skeleton. The trajectory can not be changed afterwards.
+	 */
+	void shareTrajectory(PopulationSkeleton skeleton) {
+		trajectory = skeleton.share(trajectory);
+	}
+
 	public List<String> getTrajectory() {
 		return trajectory;
 	}
@@ -255,17 +329,85 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	/**
-	 * Add amount of time to spent time for an activity.
+	 * Writes the state of this person. Container and traceable contacts are written separately,
+	 * because they refer to other objects.
 	 */
-	public void addSpentTime(String actType, double timeSpent) {
-		spentTime.addToValue(actType, timeSpent);
+	void write(DataOutput out) throws IOException {
+		out.writeByte(status.ordinal());
+		out.writeByte(quarantineStatus.ordinal());
+		out.writeInt(quarantineDate);
+		for (int day : statusChanges)
+			out.writeInt(day);
+
+		out.writeInt(currentPositionInTrajectory);
+		out.writeInt(trajectory.size());
+		for (String act : trajectory)
+			out.writeUTF(act);
+
+		writeNullable(out, firstFacilityId);
+		writeNullable(out, lastFacilityId);
 	}
 
 	/**
-	 * Spent time of this person by activity.
+	 * Restores the state written by {@link #write(DataOutput)}. Must be called before the person is registered,
+	 * so that the reporting counts the restored status.
 	 */
-	public MutableObjectDoubleMap<String> getSpentTime() {
-		return spentTime;
+	void read(DataInput in) throws IOException {
+		status = DiseaseStatus.values()[in.readByte()];
+		quarantineStatus = QuarantineStatus.values()[in.readByte()];
+		quarantineDate = in.readInt();
+		for (int i = 0; i < statusChanges.length; i++)
+			statusChanges[i] = in.readInt();
+
+		currentPositionInTrajectory = in.readInt();
+		trajectory = new ArrayList<>();
+		int n = in.readInt();
+		for (int i = 0; i < n; i++)
+			trajectory.add(in.readUTF().intern());
+
+		firstFacilityId = readNullable(in);
+		lastFacilityId = readNullable(in);
+	}
+
+	/**
+	 * Writes the traceable contacts with the id of the contact person.
+	 */
+	void writeTraceableContacts(DataOutput out) throws IOException {
+		if (traceableContactPersons == null) {
+			out.writeInt(0);
+			return;
+		}
+
+		out.writeInt(traceableContactPersons.size());
+		for (EpisimPerson p : traceableContactPersons.keySet()) {
+			out.writeUTF(p.getPersonId().toString());
+			out.writeDouble(traceableContactPersons.get(p));
+		}
+	}
+
+	/**
+	 * Restores the traceable contacts written by {@link #writeTraceableContacts(DataOutput)}.
+	 *
+	 * @param persons lookup of persons by their id
+	 */
+	void readTraceableContacts(DataInput in, Function<String, EpisimPerson> persons) throws IOException {
+		traceableContactPersons = null;
+		int n = in.readInt();
+		if (n > 0)
+			traceableContactPersons = new ObjectDoubleHashMap<>(n);
+
+		for (int i = 0; i < n; i++)
+			traceableContactPersons.put(persons.apply(in.readUTF()), in.readDouble());
+	}
+
+	private static void writeNullable(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	private static String readNullable(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
 	}
 
 	/**
@@ -20,16 +20,14 @@
  */
 package org.matsim.episim;
 
-import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 import com.typesafe.config.ConfigRenderOptions;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
-import org.eclipse.collections.impl.map.mutable.primitive.ObjectDoubleHashMap;
 import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
 import org.matsim.api.core.v01.events.Event;
-import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.events.handler.BasicEventHandler;
@@ -38,19 +36,32 @@ import org.matsim.episim.events.EpisimContactEvent;
 import org.matsim.episim.events.EpisimInfectionEvent;
 import org.matsim.episim.events.EpisimPersonStatusEvent;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.reporting.BinaryEventWriter;
 import org.matsim.episim.reporting.EpisimWriter;
+import org.matsim.episim.reporting.InputPositionWriter;
+import org.matsim.episim.reporting.MergedEventReader;
+import org.matsim.episim.reporting.ParallelGzipOutputStream;
 
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Reporting and persisting of metrics, like number of infected people etc.
@@ -60,14 +71,33 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 	private static final Logger log = LogManager.getLogger(EpisimReporting.class);
 	private static final AtomicInteger specificInfectionsCnt = new AtomicInteger(300);
 
+	/**
+	 * Position of the quarantine count within the live counts, after all disease states.
+	 */
+	private static final int QUARANTINE_IDX = EpisimPerson.DiseaseStatus.values().length;
+
 	private final EpisimWriter writer;
-	private final EventsManager manager;
+	private final EpisimEventBus bus;
 
 	/**
 	 * Base path for event files.
 	 */
 	private final Path eventPath;
+	/**
+	 * Base directory of all output.
+	 */
+	private final Path outputPath;
+	/**
+	 * Prefix for all output files, see {@link #getOutputBase(Config)}.
+	 */
+	private final String outputBase;
+	/**
+	 * Report files by their path relative to {@link #outputPath}, which are continued when a run is resumed.
+	 */
+	private final Map<String, BufferedWriter> outputs = new LinkedHashMap<>();
 	private final EpisimConfigGroup.WriteEvents writeEvents;
+	private final EpisimConfigGroup.EventsFormat eventsFormat;
+	private final int compressionThreads;
 
 	private final BufferedWriter infectionReport;
 	private final BufferedWriter infectionEvents;
@@ -79,31 +109,82 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 	 */
 	private final MutableObjectIntMap<String> hospitalCases = new ObjectIntHashMap<>();
 
+	/**
+	 * Index of each district in {@link #statusCounts}.
+	 */
+	private final MutableObjectIntMap<String> districtIndex = new ObjectIntHashMap<>();
+
+	/**
+	 * Live number of persons for each district, indexed by {@link EpisimPerson.DiseaseStatus#ordinal()}
+	 * and the number of quarantined persons at {@link #QUARANTINE_IDX}.
+	 */
+	private final List<int[]> statusCounts = new ArrayList<>();
+
+	/**
+	 * Order of districts in the report, as they appear in the person collection.
+	 */
+	private List<String> districtOrder = new ArrayList<>();
+	private boolean districtsChanged = false;
+
+	/**
+	 * Susceptible persons of each district, same index as {@link #statusCounts}.
+	 */
+	private final List<SusceptiblePool> susceptibleByDistrict = new ArrayList<>();
+	/**
+	 * Names of the districts, same index as {@link #statusCounts}.
+	 */
+	private final List<String> districtNames = new ArrayList<>();
+	private final SusceptiblePool susceptible = new SusceptiblePool();
+
+	/**
+	 * Index of each activity in {@link #timeUseSum}, same order as the time use output.
+	 */
+	private final MutableObjectIntMap<String> activityIndex = new ObjectIntHashMap<>();
+
+	/**
+	 * Total time spent by all persons during the current day, by activity.
+	 */
+	private final double[] timeUseSum;
+
 	/**
 	 * Number format for logging output. Not static because not thread-safe.
 	 */
 	private final NumberFormat decimalFormat = DecimalFormat.getInstance(Locale.GERMAN);
 	private final double sampleSize;
+	private final boolean checkCounts;
 	/**
 	 * Current day / iteration.
 	 */
 	private int iteration;
 	private BufferedWriter events;
 
+	/**
+	 * Aggregates contacts when enabled, otherwise null.
+	 */
+	@Nullable
+	private final ContactAggregator contacts;
+	/**
+	 * Binary event log of the current day, only used with {@link EpisimConfigGroup.EventsFormat#binary}.
+	 */
+	private BinaryEventWriter binaryEvents;
+
+	/**
+	 * Input positions of the written episim events, only used with {@link EpisimConfigGroup.WriteEvents#reference}.
+	 */
+	private InputPositionWriter positions;
+	private BufferedWriter manifest;
+	private String inputEventsFile;
+	/**
+	 * Number of input events replayed on the current day.
+	 */
+	private long inputPosition;
+
 
 	@Inject
-	EpisimReporting(Config config, EpisimWriter writer, EventsManager manager) {
-		String base;
+	EpisimReporting(Config config, EpisimWriter writer, EpisimEventBus bus) {
+		String base = getOutputBase(config);
 		String outDir = config.controler().getOutputDirectory();
 
-		// file names depend on the run name
-		if (config.controler().getRunId() != null) {
-			base = outDir + "/" + config.controler().getRunId() + ".";
-		} else if (!outDir.endsWith("/")) {
-			base = outDir + "/";
-		} else
-			base = outDir;
-
 		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 
 		try {
@@ -117,7 +198,9 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 		}
 
 		this.writer = writer;
-		this.manager = manager;
+		this.bus = bus;
+		this.outputPath = Path.of(outDir);
+		this.outputBase = base;
 
 		infectionReport = EpisimWriter.prepare(base + "infections.txt", InfectionsWriterFields.class);
 		infectionEvents = EpisimWriter.prepare(base + "infectionEvents.txt", InfectionEventsWriterFields.class);
@@ -126,8 +209,43 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 		timeUse = EpisimWriter.prepare(base + "timeUse.txt",
 				"day", "", episimConfig.createInitialRestrictions().keySet().toArray());
 
+		// same naming as the output base
+		String prefix = config.controler().getRunId() != null ? config.controler().getRunId() + "." : "";
+		outputs.put(prefix + "infections.txt", infectionReport);
+		outputs.put(prefix + "infectionEvents.txt", infectionEvents);
+		outputs.put(prefix + "restrictions.txt", restrictionReport);
+		outputs.put(prefix + "timeUse.txt", timeUse);
+
+		for (String act : episimConfig.createInitialRestrictions().keySet())
+			activityIndex.put(act, activityIndex.size());
+
+		timeUseSum = new double[activityIndex.size()];
+
 		sampleSize = episimConfig.getSampleSize();
+		checkCounts = episimConfig.isCheckReportCounts();
 		writeEvents = episimConfig.getWriteEvents();
+		eventsFormat = episimConfig.getEventsFormat();
+		compressionThreads = episimConfig.getEventCompressionThreads();
+
+		if (writeEvents == EpisimConfigGroup.WriteEvents.reference) {
+			manifest = EpisimWriter.prepare(eventPath.resolve(MergedEventReader.MANIFEST).toString(), MergedEventReader.ManifestFields.class);
+			outputs.put(outputPath.relativize(eventPath.resolve(MergedEventReader.MANIFEST)).toString(), manifest);
+			inputEventsFile = episimConfig.getInputEventsFile();
+			if (inputEventsFile != null && Files.exists(Path.of(inputEventsFile)))
+				inputEventsFile = Path.of(inputEventsFile).toAbsolutePath().toString();
+		}
+
+		contacts = episimConfig.isAggregateContacts() ?
+				new ContactAggregator(episimConfig, ContactAggregator.prepare(base + "contacts.txt")) : null;
+
+		if (contacts != null) {
+			bus.addListener(contacts);
+			outputs.put(prefix + "contacts.txt", contacts.getOutput());
+		}
+
+		// episim events are only materialized when they need to be written
+		if (writeEvents != EpisimConfigGroup.WriteEvents.none)
+			bus.addListener(new EventWriter());
 
 		try {
 			Files.writeString(Paths.get(base + "policy.conf"),
@@ -139,77 +257,130 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 		}
 	}
 
+	/**
+	 * Prefix for all output files, which depends on output directory and run id.
+	 */
+	static String getOutputBase(Config config) {
+		String outDir = config.controler().getOutputDirectory();
+
+		// file names depend on the run name
+		if (config.controler().getRunId() != null) {
+			return outDir + "/" + config.controler().getRunId() + ".";
+		} else if (!outDir.endsWith("/")) {
+			return outDir + "/";
+		} else
+			return outDir;
+	}
+
+	/**
+	 * Registers a new person in the live counts. Needs to be called once for every person that is part of the reports.
+	 */
+	void registerPerson(EpisimPerson person) {
+		int idx = getOrCreateDistrict(getDistrict(person));
+
+		person.setDistrictIndex(idx);
+		susceptible.register(person);
+		susceptibleByDistrict.get(idx).register(person);
+
+		int[] counts = statusCounts.get(idx);
+		counts[person.getDiseaseStatus().ordinal()]++;
+		if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
+			counts[QUARANTINE_IDX]++;
+
+		// order of districts depends on the order of the persons
+		districtsChanged = true;
+	}
+
+	/**
+	 * Index of a district in the live counts, which is created if not present yet.
+	 */
+	private int getOrCreateDistrict(String name) {
+		int idx = districtIndex.getIfAbsent(name, -1);
+		if (idx == -1) {
+			idx = statusCounts.size();
+			districtIndex.put(name, idx);
+			districtNames.add(name);
+			statusCounts.add(new int[QUARANTINE_IDX + 1]);
+			susceptibleByDistrict.add(new SusceptiblePool());
+		}
+
+		return idx;
+	}
+
+	/**
+	 * Updates the live counts when the disease status of a person changes.
+	 */
+	void updateDiseaseStatusCount(EpisimPerson person, EpisimPerson.DiseaseStatus from, EpisimPerson.DiseaseStatus to) {
+		// persons that are not registered are not part of the reports
+		if (person.getDistrictIndex() < 0) return;
+
+		int[] counts = statusCounts.get(person.getDistrictIndex());
+		counts[from.ordinal()]--;
+		counts[to.ordinal()]++;
+
+		susceptible.update(person, from, to);
+		susceptibleByDistrict.get(person.getDistrictIndex()).update(person, from, to);
+	}
+
+	/**
+	 * Returns the susceptible persons of a district, or of all districts if {@code district} is null.
+	 *
+	 * @return pool of persons or null if there are no persons in this district
+	 */
+	@Nullable
+	SusceptiblePool getSusceptiblePool(@Nullable String district) {
+		if (district == null) return susceptible;
+
+		int idx = districtIndex.getIfAbsent(district, -1);
+		return idx == -1 ? null : susceptibleByDistrict.get(idx);
+	}
+
+	/**
+	 * Updates the live counts when the quarantine status of a person changes.
+	 */
+	void updateQuarantineStatusCount(EpisimPerson person, EpisimPerson.QuarantineStatus from, EpisimPerson.QuarantineStatus to) {
+		if (person.getDistrictIndex() < 0) return;
+
+		// For now there is no separation in the report between full and home
+		boolean before = from != EpisimPerson.QuarantineStatus.no;
+		boolean after = to != EpisimPerson.QuarantineStatus.no;
+
+		if (before != after)
+			statusCounts.get(person.getDistrictIndex())[QUARANTINE_IDX] += after ? 1 : -1;
+	}
+
 	/**
 	 * Creates infections reports for the day. Grouped by district, but always containing a "total" entry.
+	 * The counts are taken from the live counters, only the order of districts requires a pass over all persons when new persons were registered.
 	 */
 	Map<String, InfectionReport> createReports(Collection<EpisimPerson> persons, int iteration) {
 
+		if (districtsChanged) {
+			Set<String> order = new LinkedHashSet<>();
+			for (EpisimPerson person : persons)
+				order.add(getDistrict(person));
+
+			districtOrder = new ArrayList<>(order);
+			districtsChanged = false;
+		}
+
 		Map<String, InfectionReport> reports = new LinkedHashMap<>();
 		InfectionReport report = new InfectionReport("total", EpisimUtils.getCorrectedTime(0., iteration), iteration);
 		reports.put("total", report);
 
-		for (EpisimPerson person : persons) {
-			String districtName = (String) person.getAttributes().getAttribute("district");
+		for (String name : districtOrder) {
+			int[] counts = statusCounts.get(districtIndex.get(name));
+			InfectionReport district = new InfectionReport(name, report.time, report.day);
 
-			// Also aggregate by district
-			InfectionReport district = reports.computeIfAbsent(districtName == null ? "unknown"
-					: districtName, name -> new InfectionReport(name, report.time, report.day));
-			switch (person.getDiseaseStatus()) {
-				case susceptible:
-					report.nSusceptible++;
-					district.nSusceptible++;
-					break;
-				case infectedButNotContagious:
-					report.nInfectedButNotContagious++;
-					district.nInfectedButNotContagious++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case contagious:
-					report.nContagious++;
-					district.nContagious++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case showingSymptoms:
-					report.nShowingSymptoms++;
-					district.nShowingSymptoms++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case seriouslySick:
-					report.nSeriouslySick++;
-					district.nSeriouslySick++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case critical:
-					report.nCritical++;
-					district.nCritical++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case recovered:
-					report.nRecovered++;
-					district.nRecovered++;
-					break;
-				default:
-					throw new IllegalStateException("Unexpected value: " + person.getDiseaseStatus());
-			}
-			switch (person.getQuarantineStatus()) {
-				// For now there is no separation in the report between full and home
-				case atHome:
-				case full:
-					report.nInQuarantine++;
-					district.nInQuarantine++;
-					break;
-				case no:
-					break;
-				default:
-					throw new IllegalStateException("Unexpected value: " + person.getQuarantineStatus());
-			}
+			district.addCounts(counts);
+			report.addCounts(counts);
+
+			reports.put(name, district);
 		}
 
+		if (checkCounts)
+			checkReports(reports, recountReports(persons, iteration));
+
 		// aggregate hospital cases at last
 		long nHospitalCumulative = 0;
 		for (String district : reports.keySet()) {
@@ -224,6 +395,61 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 		return reports;
 	}
 
+	/**
+	 * Counts the status of all persons from scratch, without hospital cases and scaling.
+	 * Only used to verify the live counts.
+	 */
+	Map<String, InfectionReport> recountReports(Collection<EpisimPerson> persons, int iteration) {
+
+		Map<String, InfectionReport> reports = new LinkedHashMap<>();
+		InfectionReport report = new InfectionReport("total", EpisimUtils.getCorrectedTime(0., iteration), iteration);
+		reports.put("total", report);
+
+		int[] counts = new int[QUARANTINE_IDX + 1];
+		for (EpisimPerson person : persons) {
+
+			// Also aggregate by district
+			InfectionReport district = reports.computeIfAbsent(getDistrict(person), name -> new InfectionReport(name, report.time, report.day));
+
+			Arrays.fill(counts, 0);
+			counts[person.getDiseaseStatus().ordinal()] = 1;
+			if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
+				counts[QUARANTINE_IDX] = 1;
+
+			report.addCounts(counts);
+			district.addCounts(counts);
+		}
+
+		return reports;
+	}
+
+	/**
+	 * Throws an exception if the live counts differ from the recount.
+	 */
+	private static void checkReports(Map<String, InfectionReport> live, Map<String, InfectionReport> recount) {
+
+		if (!live.keySet().equals(recount.keySet()))
+			throw new IllegalStateException("Districts of live counts " + live.keySet() + " differ from recount " + recount.keySet());
+
+		for (Map.Entry<String, InfectionReport> e : live.entrySet()) {
+			InfectionReport a = e.getValue();
+			InfectionReport b = recount.get(e.getKey());
+
+			if (a.nSusceptible != b.nSusceptible || a.nInfectedButNotContagious != b.nInfectedButNotContagious || a.nContagious != b.nContagious
+					|| a.nShowingSymptoms != b.nShowingSymptoms || a.nSeriouslySick != b.nSeriouslySick || a.nCritical != b.nCritical
+					|| a.nTotalInfected != b.nTotalInfected || a.nRecovered != b.nRecovered || a.nInQuarantine != b.nInQuarantine)
+				throw new IllegalStateException("Live counts differ from recount for district " + e.getKey());
+		}
+	}
+
+	/**
+	 * District name of a person used for the reports.
+	 */
+	private static String getDistrict(EpisimPerson person) {
+		String districtName = (String) person.getAttributes().getAttribute("district");
+		return districtName == null ? "unknown" : districtName;
+	}
+
 	/**
 	 * Writes the infection report to csv.
 	 */
@@ -285,8 +511,8 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 			specificInfectionsCnt.setOpaque(cnt - 1);
 		}
 
-		manager.processEvent(new EpisimInfectionEvent(now, personWrapper.getPersonId(), infector.getPersonId(),
-				personWrapper.getCurrentContainer().getContainerId(), infectionType));
+		if (bus.hasListeners())
+			bus.fireInfection(now, personWrapper, infector, personWrapper.getCurrentContainer(), infectionType);
 
 
 		String[] array = new String[InfectionEventsWriterFields.values().length];
@@ -306,10 +532,8 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 	public void reportContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
 							  StringBuilder actType, double duration, double infectionProb) {
 
-		if (writeEvents == EpisimConfigGroup.WriteEvents.tracing || writeEvents == EpisimConfigGroup.WriteEvents.all) {
-			manager.processEvent(new EpisimContactEvent(now, person.getPersonId(), contactPerson.getPersonId(), container.getContainerId(),
-					actType.toString(), duration, infectionProb));
-		}
+		if (bus.hasListeners())
+			bus.fireContact(now, person, contactPerson, container, actType, duration, infectionProb);
 
 	}
 
@@ -320,66 +544,197 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 		writer.append(restrictionReport, "\n");
 	}
 
-	void reportTimeUse(Set<String> activities, Collection<EpisimPerson> persons, long iteration) {
-
-		if (iteration == 0) return;
-
-		ObjectDoubleHashMap<String> avg = new ObjectDoubleHashMap<>();
+	/**
+	 * Writes the reason why the simulation was stopped before it was finished.
+	 */
+	void reportStop(long iteration, String reason) {
+		try {
+			Files.writeString(Paths.get(outputBase + "stopped.txt"), "day\treason\n" + iteration + "\t" + reason + "\n");
+		} catch (IOException e) {
+			log.error("Could not write stop reason", e);
+		}
+	}
 
-		int i = 1;
-		for (EpisimPerson person : persons) {
+	/**
+	 * Add spent time of one person during an activity or trip. Activities without a corresponding container are ignored.
+	 */
+	public void reportSpentTime(String actType, double timeSpent) {
+		int idx = activityIndex.getIfAbsent(actType, -1);
+		if (idx > -1)
+			timeUseSum[idx] += timeSpent;
+	}
 
-			// computing incremental avg.
-			// Average += (NewValue - Average) / NewSampleCount;
-			for (String act : activities) {
-				avg.addToValue(act, (person.getSpentTime().get(act) - avg.get(act)) / i);
-			}
+	/**
+	 * Writes the average time use per person and resets the accumulated time.
+	 */
+	void reportTimeUse(Collection<EpisimPerson> persons, long iteration) {
 
-			person.getSpentTime().clear();
-			i++;
-		}
+		if (iteration == 0) return;
 
-		List<String> order = Lists.newArrayList(activities);
-		Object[] array = new String[order.size()];
+		Object[] array = new String[timeUseSum.length];
 		Arrays.fill(array, "");
 
 		// report minutes
-		avg.forEachKeyValue((k, v) -> array[order.indexOf(k)] = String.valueOf(v / 60d));
+		if (!persons.isEmpty()) {
+			for (int i = 0; i < timeUseSum.length; i++) {
+				array[i] = String.valueOf(timeUseSum[i] / persons.size() / 60d);
+			}
+		}
+
+		Arrays.fill(timeUseSum, 0);
 
 		writer.append(timeUse, EpisimWriter.JOINER.join(iteration, "", array));
 		writer.append(timeUse, "\n");
 	}
 
 	/**
-	 * Report that a person status has changed and publish corresponding event.
+	 * Writes the aggregated contacts of the previous day, if enabled.
+	 */
+	void reportContacts(long iteration) {
+
+		if (iteration == 0 || contacts == null) return;
+
+		contacts.write(writer, iteration, districtNames);
+	}
+
+	/**
+	 * Report that a person status has changed and notify the listeners.
 	 */
-	public void reportPersonStatus(EpisimPerson person, EpisimPersonStatusEvent event) {
+	public void reportPersonStatus(double now, EpisimPerson person, EpisimPerson.DiseaseStatus status) {
 
-		if (event.getDiseaseStatus() == EpisimPerson.DiseaseStatus.seriouslySick) {
+		if (status == EpisimPerson.DiseaseStatus.seriouslySick) {
 			String districtName = (String) person.getAttributes().getAttribute("district");
 			hospitalCases.addToValue(districtName == null ? "unknown" : districtName, 1);
 		}
 
-		manager.processEvent(event);
+		if (bus.hasListeners())
+			bus.fireStatusChange(now, person, status);
+	}
+
+	/**
+	 * Writes the state of the counters that can not be derived from the persons.
+	 * Must be written at the day boundary, when all daily aggregates have been reported.
+	 */
+	void writeState(DataOutput out) throws IOException {
+		out.writeInt(districtNames.size());
+		for (String name : districtNames)
+			out.writeUTF(name);
+
+		out.writeInt(hospitalCases.size());
+		for (String district : hospitalCases.keySet()) {
+			out.writeUTF(district);
+			out.writeInt(hospitalCases.get(district));
+		}
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(DataOutput)}. Persons need to be registered afterwards.
+	 */
+	void readState(DataInput in) throws IOException {
+		// districts are created in the original order, so they keep their index
+		int n = in.readInt();
+		for (int i = 0; i < n; i++)
+			getOrCreateDistrict(in.readUTF());
+
+		hospitalCases.clear();
+		n = in.readInt();
+		for (int i = 0; i < n; i++)
+			hospitalCases.put(in.readUTF(), in.readInt());
+	}
+
+	/**
+	 * Sizes of all report files, after everything reported so far has been written.
+	 * Keys are paths relative to the output directory.
+	 */
+	Map<String, Long> getOutputSizes() throws IOException {
+		outputs.values().forEach(writer::flush);
+		writer.sync();
+
+		Map<String, Long> sizes = new LinkedHashMap<>();
+		for (String name : outputs.keySet())
+			sizes.put(name, Files.size(outputPath.resolve(name)));
+
+		return sizes;
+	}
+
+	/**
+	 * Continues the output of a run in {@code directory}, which has been written until the beginning of {@code day}.
+	 * The rows of all reports are appended to the new files and the event files of the previous days are copied.
+	 *
+	 * @param sizes size of the reports at the beginning of the day, see {@link #getOutputSizes()}
+	 */
+	void appendOutput(Path directory, int day, Map<String, Long> sizes) throws IOException {
+
+		for (Map.Entry<String, BufferedWriter> e : outputs.entrySet()) {
+			Path file = directory.resolve(e.getKey());
+			if (!sizes.containsKey(e.getKey()) || !Files.exists(file)) {
+				log.warn("Output {} to continue from does not exist", file);
+				continue;
+			}
+
+			// the manifest row of this day is written again when the day is started
+			Predicate<String> keep = e.getValue() == manifest ?
+					row -> Integer.parseInt(row.split("\t")[MergedEventReader.ManifestFields.day.ordinal()]) < day :
+					row -> true;
+
+			appendRows(e.getValue(), file, sizes.get(e.getKey()), keep);
+		}
+
+		Path events = directory.resolve("events");
+		if (writeEvents == EpisimConfigGroup.WriteEvents.none || !Files.exists(events) || Files.isSameFile(events, eventPath)) return;
+
+		try (Stream<Path> files = Files.list(events)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				String name = file.getFileName().toString();
+				if (!name.startsWith("day_")) continue;
+
+				int fileDay = Integer.parseInt(name.substring(4, name.indexOf('.')));
+				if (fileDay < day)
+					Files.copy(file, eventPath.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 * Appends all rows except the header within the first {@code size} bytes of {@code file}.
+	 *
+	 * @param keep rows that are appended
+	 */
+	private void appendRows(BufferedWriter out, Path file, long size, Predicate<String> keep) throws IOException {
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(ByteStreams.limit(Files.newInputStream(file), size), StandardCharsets.UTF_8))) {
+			// skip header
+			String row = reader.readLine();
+			while ((row = reader.readLine()) != null) {
+				if (keep.test(row))
+					writer.append(out, row + "\n");
+			}
+		}
+
+		writer.flush(out);
 	}
 
 	@Override
 	public void close() {
 
-		if (events != null) {
-			writer.append(events, "</events>");
-			writer.close(events);
-		}
+		closeEvents();
 
 		writer.close(infectionReport);
 		writer.close(infectionEvents);
 		writer.close(restrictionReport);
 		writer.close(timeUse);
 
+		if (contacts != null)
+			writer.close(contacts.getOutput());
+
+		if (manifest != null)
+			writer.close(manifest);
+
 	}
 
 	/**
 	 * This method may ever only do event writing, as it can be disabled via config.
+	 * Only input events are received here, episim events are written by {@link EventWriter}.
 	 */
 	@Override
 	public void handleEvent(Event event) {
@@ -387,13 +742,36 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 		// Events on 0th day are not needed
 		if (iteration == 0) return;
 
-		// Crucial episim events are always written, others only if enabled
-		if (event instanceof EpisimPersonStatusEvent || event instanceof EpisimInfectionEvent
-				|| (writeEvents == EpisimConfigGroup.WriteEvents.tracing && event instanceof EpisimContactEvent)
-				|| writeEvents == EpisimConfigGroup.WriteEvents.all)
+		if (writeEvents == EpisimConfigGroup.WriteEvents.all)
+			writeEvent(event);
+		else if (writeEvents == EpisimConfigGroup.WriteEvents.reference)
+			inputPosition++;
 
+	}
+
+	private void writeEvent(Event event) {
+		if (binaryEvents != null) {
+			try {
+				binaryEvents.write(event);
+			} catch (IOException e) {
+				log.error("Could not write event");
+				throw new UncheckedIOException(e);
+			}
+		} else
 			writer.append(events, event);
+	}
 
+	/**
+	 * Flushes all reports, which is done by the runner at each day boundary, so that the previous days are written completely.
+	 */
+	void flushReports() {
+		writer.flush(infectionReport);
+		writer.flush(infectionEvents);
+		writer.flush(restrictionReport);
+		writer.flush(timeUse);
+
+		if (contacts != null)
+			writer.flush(contacts.getOutput());
 	}
 
 	@Override
@@ -403,13 +781,74 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 
 		if (iteration == 0 ||writeEvents == EpisimConfigGroup.WriteEvents.none) return;
 
+		closeEvents();
+
+		Path file = eventPath.resolve(String.format(eventsFormat == EpisimConfigGroup.EventsFormat.binary ? "day_%03d.bin" : "day_%03d.xml.gz", iteration));
+
+		if (manifest != null) {
+			Path positionFile = eventPath.resolve(String.format("day_%03d.pos", iteration));
+			try {
+				positions = new InputPositionWriter(positionFile);
+			} catch (IOException e) {
+				log.error("Could not create position file", e);
+				throw new UncheckedIOException(e);
+			}
+			inputPosition = 0;
+
+			String[] row = new String[MergedEventReader.ManifestFields.values().length];
+			row[MergedEventReader.ManifestFields.day.ordinal()] = String.valueOf(iteration);
+			row[MergedEventReader.ManifestFields.events.ordinal()] = file.getFileName().toString();
+			row[MergedEventReader.ManifestFields.positions.ordinal()] = positionFile.getFileName().toString();
+			row[MergedEventReader.ManifestFields.input.ordinal()] = inputEventsFile;
+			row[MergedEventReader.ManifestFields.offset.ordinal()] = String.valueOf(EpisimUtils.getCorrectedTime(0, iteration));
+			writer.append(manifest, row);
+			writer.flush(manifest);
+		}
+
+		if (eventsFormat == EpisimConfigGroup.EventsFormat.binary) {
+			try {
+				binaryEvents = new BinaryEventWriter(file, iteration);
+			} catch (IOException e) {
+				log.error("Could not create event file", e);
+				throw new UncheckedIOException(e);
+			}
+			return;
+		}
+
+		events = compressionThreads > 0 ? ParallelGzipOutputStream.createWriter(file, compressionThreads)
+				: IOUtils.getBufferedWriter(file.toString());
+		writer.append(events, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+	}
+
+	/**
+	 * Finish the event file of the previous day.
+	 */
+	private void closeEvents() {
 		if (events != null) {
 			writer.append(events, "</events>");
 			writer.close(events);
+			events = null;
 		}
 
-		events = IOUtils.getBufferedWriter(eventPath.resolve(String.format("day_%03d.xml.gz", iteration)).toString());
-		writer.append(events, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+		if (binaryEvents != null) {
+			try {
+				binaryEvents.close();
+			} catch (IOException e) {
+				log.error("Could not close event file", e);
+				throw new UncheckedIOException(e);
+			}
+			binaryEvents = null;
+		}
+
+		if (positions != null) {
+			try {
+				positions.close();
+			} catch (IOException e) {
+				log.error("Could not close position file", e);
+				throw new UncheckedIOException(e);
+			}
+			positions = null;
+		}
 	}
 
 	enum InfectionsWriterFields {
@@ -456,6 +895,25 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 			return nSusceptible + nTotalInfected + nRecovered;
 		}
 
+		/**
+		 * Adds status counts indexed by {@link EpisimPerson.DiseaseStatus#ordinal()}, followed by the quarantine count.
+		 */
+		void addCounts(int[] counts) {
+			nSusceptible += counts[EpisimPerson.DiseaseStatus.susceptible.ordinal()];
+			nInfectedButNotContagious += counts[EpisimPerson.DiseaseStatus.infectedButNotContagious.ordinal()];
+			nContagious += counts[EpisimPerson.DiseaseStatus.contagious.ordinal()];
+			nShowingSymptoms += counts[EpisimPerson.DiseaseStatus.showingSymptoms.ordinal()];
+			nSeriouslySick += counts[EpisimPerson.DiseaseStatus.seriouslySick.ordinal()];
+			nCritical += counts[EpisimPerson.DiseaseStatus.critical.ordinal()];
+			nRecovered += counts[EpisimPerson.DiseaseStatus.recovered.ordinal()];
+			nTotalInfected += counts[EpisimPerson.DiseaseStatus.infectedButNotContagious.ordinal()]
+					+ counts[EpisimPerson.DiseaseStatus.contagious.ordinal()]
+					+ counts[EpisimPerson.DiseaseStatus.showingSymptoms.ordinal()]
+					+ counts[EpisimPerson.DiseaseStatus.seriouslySick.ordinal()]
+					+ counts[EpisimPerson.DiseaseStatus.critical.ordinal()];
+			nInQuarantine += counts[QUARANTINE_IDX];
+		}
+
 		void scale(double factor) {
 			nSusceptible *= factor;
 			nInfectedButNotContagious *= factor;
@@ -469,4 +927,43 @@ public final class EpisimReporting implements BasicEventHandler, Closeable {
 			nInQuarantine *= factor;
 		}
 	}
+	/**
+	 * Creates and writes episim events. Crucial episim events are always written, contacts only if enabled.
+	 */
+	private final class EventWriter implements EpisimListener {
+
+		@Override
+		public void onStatusChange(double now, EpisimPerson person, EpisimPerson.DiseaseStatus status) {
+			if (iteration == 0) return;
+			writeEpisimEvent(new EpisimPersonStatusEvent(now, person.getPersonId(), status));
+		}
+
+		@Override
+		public void onInfection(double now, EpisimPerson person, EpisimPerson infector, EpisimContainer<?> container, String infectionType) {
+			if (iteration == 0) return;
+			writeEpisimEvent(new EpisimInfectionEvent(now, person.getPersonId(), infector.getPersonId(), container.getContainerId(), infectionType));
+		}
+
+		@Override
+		public void onContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+							  CharSequence actType, double duration, double infectionProb) {
+			if (iteration == 0 || writeEvents == EpisimConfigGroup.WriteEvents.episim) return;
+			writeEpisimEvent(new EpisimContactEvent(now, person.getPersonId(), contactPerson.getPersonId(), container.getContainerId(),
+					actType.toString(), duration, infectionProb));
+		}
+
+		private void writeEpisimEvent(Event event) {
+			if (positions != null) {
+				try {
+					positions.write(inputPosition);
+				} catch (IOException e) {
+					log.error("Could not write input position");
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			writeEvent(event);
+		}
+	}
+
 }
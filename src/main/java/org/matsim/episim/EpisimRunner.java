@@ -22,10 +22,24 @@ package org.matsim.episim;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.ControlerUtils;
+import org.matsim.episim.jfr.DayEvent;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Main entry point and runner of one epidemic simulation.
@@ -35,20 +49,54 @@ import org.matsim.core.controler.ControlerUtils;
  */
 public final class EpisimRunner {
 
+	/**
+	 * Version of the snapshot format, which is checked when reading.
+	 */
+	private static final int SNAPSHOT_VERSION = 3;
+
+	private static final Logger log = LogManager.getLogger(EpisimRunner.class);
+
+	/**
+	 * Directory within the output where checkpoints are written.
+	 */
+	private static final String CHECKPOINTS = "checkpoints";
+
 	private final Config config;
 	private final EventsManager manager;
 	private final Provider<InfectionEventHandler> handlerProvider;
 	private final Provider<ReplayHandler> replayProvider;
 	private final Provider<EpisimReporting> reportingProvider;
+	private final Provider<PerformanceMonitor> monitorProvider;
+	private final Provider<StopCriterion> stopProvider;
+	private final LiveMetrics metrics;
+	private final int checkpointInterval;
+
+	/**
+	 * Performance measurement, disabled until the run is started.
+	 */
+	private PerformanceMonitor monitor = PerformanceMonitor.DISABLED;
+
+	private EpisimReporting reporting;
+	private StopCriterion stop;
+
+	/**
+	 * Whether reporting needs to be reset explicitly, because it is not registered at the events manager.
+	 */
+	private boolean resetReporting;
 
 	@Inject
 	public EpisimRunner(Config config, EventsManager manager, Provider<InfectionEventHandler> handlerProvider,
-						Provider<ReplayHandler> replay, Provider<EpisimReporting> reportingProvider) {
+						Provider<ReplayHandler> replay, Provider<EpisimReporting> reportingProvider, Provider<PerformanceMonitor> monitorProvider, Provider<StopCriterion> stopProvider,
+						LiveMetrics metrics) {
 		this.config = config;
 		this.handlerProvider = handlerProvider;
 		this.manager = manager;
 		this.replayProvider = replay;
 		this.reportingProvider = reportingProvider;
+		this.monitorProvider = monitorProvider;
+		this.stopProvider = stopProvider;
+		this.metrics = metrics;
+		this.checkpointInterval = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).getCheckpointInterval();
 	}
 
 	/**
@@ -61,15 +109,8 @@ public final class EpisimRunner {
 		// Construct these dependencies as late as possible, so all other configs etc have been fully configured
 		final ReplayHandler replay = replayProvider.get();
 		final InfectionEventHandler handler = handlerProvider.get();
-		final EpisimReporting reporting = reportingProvider.get();
-
-		manager.addHandler(handler);
-
-		// reporting will write events if necessary
-		if (ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).getWriteEvents() != EpisimConfigGroup.WriteEvents.none)
-			manager.addHandler(reporting);
 
-		ControlerUtils.checkConfigConsistencyAndWriteToLog(config, "Just before starting iterations");
+		init(handler);
 
 		for (int iteration = 0; iteration <= maxIterations; iteration++) {
 
@@ -78,7 +119,224 @@ public final class EpisimRunner {
 
 		}
 
+		finish();
+	}
+
+	/**
+	 * Runs several simulations of the same scenario at once, which differ only in their config, e.g. the random seed.
+	 * The events of each day are replayed only once and passed to all simulations, which proceed day by day together.
+	 * Each simulation still has its own persons, containers and random number generators, so its results are the same as
+	 * when it is run on its own. Only the iteration over the events and their time correction are shared, dispatching the
+	 * events, looking up persons and containers and the infection dynamics are still done once per simulation.
+	 * All runners must use the same {@link ReplayHandler}.
+	 *
+	 * @param maxIterations maximum number of iterations (inclusive)
+	 */
+	public static void runEnsemble(List<EpisimRunner> runners, int maxIterations) {
+
+		final ReplayHandler replay = runners.get(0).replayProvider.get();
+
+		Map<EpisimRunner, InfectionEventHandler> handlers = new LinkedHashMap<>();
+		for (EpisimRunner runner : runners) {
+			if (runner.replayProvider.get() != replay)
+				throw new IllegalArgumentException("All runners of an ensemble need to use the same replay handler.");
+
+			InfectionEventHandler handler = runner.handlerProvider.get();
+			runner.init(handler);
+			handlers.put(runner, handler);
+		}
+
+		for (int iteration = 0; iteration <= maxIterations && !handlers.isEmpty(); iteration++) {
+
+			Map<EpisimRunner, DayEvent> active = new LinkedHashMap<>();
+			List<EventsManager> managers = new ArrayList<>();
+
+			Iterator<Map.Entry<EpisimRunner, InfectionEventHandler>> it = handlers.entrySet().iterator();
+			while (it.hasNext()) {
+				EpisimRunner runner = it.next().getKey();
+
+				DayEvent event = new DayEvent();
+				event.begin();
+
+				if (runner.startDay(handlers.get(runner), iteration)) {
+					active.put(runner, event);
+					managers.add(runner.manager);
+				} else {
+					runner.finish();
+					it.remove();
+				}
+			}
+
+			if (active.isEmpty())
+				break;
+
+			// all simulations report the time of the shared replay
+			long start = System.nanoTime();
+			replay.replayEvents(managers, iteration);
+
+			for (Map.Entry<EpisimRunner, DayEvent> e : active.entrySet())
+				e.getKey().endDay(replay, handlers.get(e.getKey()), iteration, e.getValue(), start);
+		}
+
+		handlers.keySet().forEach(EpisimRunner::finish);
+	}
+
+	/**
+	 * Simulates all days before {@code iteration} and writes the state of the simulation at the beginning of this day,
+	 * after the restrictions of the day have been set. The output of the run contains everything written until then.
+	 *
+	 * @return reports of all simulated days, or null if the simulation finished before
+	 * @see #resume(Path, Path, int)
+	 */
+	@Nullable
+	public List<EpisimReporting.InfectionReport> snapshot(int iteration, Path file) throws IOException {
+
+		if (iteration < 1)
+			throw new IllegalArgumentException("Snapshots can only be taken after the first day.");
+
+		final ReplayHandler replay = replayProvider.get();
+		final InfectionEventHandler handler = handlerProvider.get();
+
+		init(handler);
+
+		List<EpisimReporting.InfectionReport> reports = new ArrayList<>();
+		for (int i = 0; i < iteration; i++) {
+			if (!doStep(replay, handler, i)) {
+				finish();
+				return null;
+			}
+
+			reports.add(handler.getReport());
+		}
+
+		resetDay(iteration);
+		reports.add(handler.getReport());
+
+		// the criterion is checked before the snapshot, because the resumed run continues directly with the day
+		if (handler.isFinished() || isStopped(handler, iteration)) {
+			finish();
+			return null;
+		}
+
+		writeSnapshot(handler, iteration, file);
+
+		finish();
+		return reports;
+	}
+
+	/**
+	 * Continues a simulation from a snapshot, which was written by {@link #snapshot(int, Path)}.
+	 *
+	 * @param file          snapshot to read
+	 * @param directory     output directory of the run that wrote the snapshot, its output will be continued
+	 * @param maxIterations maximum number of iterations (inclusive)
+	 */
+	public void resume(Path file, Path directory, int maxIterations) throws IOException {
+		resume(file, directory, maxIterations, false);
+	}
+
+	/**
+	 * Continues the simulation from the latest checkpoint in the output directory, see {@link EpisimConfigGroup#setCheckpointInterval(int)}.
+	 *
+	 * @param maxIterations maximum number of iterations (inclusive)
+	 * @return false if there is no checkpoint, nothing is simulated in this case
+	 */
+	public boolean resumeFromCheckpoint(int maxIterations) throws IOException {
+
+		Path checkpoints = Path.of(config.controler().getOutputDirectory(), CHECKPOINTS);
+		Path latest = findLatestCheckpoint(checkpoints);
+		if (latest == null)
+			return false;
+
+		// reports are created from scratch when the run starts, so the old ones are moved aside until their content is appended
+		// if this directory already exists, a previous resume was interrupted and the output has been moved already
+		Path previous = checkpoints.resolve("output");
+		if (!Files.exists(previous)) {
+			Path tmp = checkpoints.resolve("output.tmp");
+			for (String name : readHeader(latest).sizes.keySet()) {
+				Path file = Path.of(config.controler().getOutputDirectory(), name);
+				if (!Files.exists(file)) continue;
+
+				Files.createDirectories(tmp.resolve(name).getParent());
+				Files.move(file, tmp.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			Files.move(tmp, previous, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		log.info("Resuming from checkpoint {}", latest);
+
+		resume(latest, previous, maxIterations, true);
+		return true;
+	}
+
+	private void resume(Path file, Path directory, int maxIterations, boolean removeDirectory) throws IOException {
+
+		final ReplayHandler replay = replayProvider.get();
+		final InfectionEventHandler handler = handlerProvider.get();
+
+		init(handler);
+
+		Header header;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			header = Header.read(in, file);
+			handler.readState(in);
+			stop.read(in);
+		}
+
+		handler.appendOutput(directory);
+		reporting.appendOutput(directory, header.iteration, header.sizes);
+
+		if (removeDirectory) {
+			// appended output must be written completely before the old one can be removed
+			reporting.getOutputSizes();
+			try (Stream<Path> files = Files.walk(directory)) {
+				for (Path f : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+					Files.delete(f);
+			}
+		}
+
+		if (!handler.isFinished()) {
+
+			DayEvent event = new DayEvent();
+			event.begin();
+
+			// the handler has been reset already, only the event output of the day needs to be started
+			monitor.startDay();
+			reporting.reset(header.iteration);
+			reporting.flushReports();
+			simulateDay(replay, handler, header.iteration, event);
+
+			for (int i = header.iteration + 1; i <= maxIterations; i++) {
+				if (!doStep(replay, handler, i))
+					break;
+			}
+		}
+
+		finish();
+	}
+
+	private void init(InfectionEventHandler handler) {
+		monitor = monitorProvider.get();
+		reporting = reportingProvider.get();
+		stop = stopProvider.get();
+
+		manager.addHandler(handler);
+
+		// reporting will write events if necessary, it only needs the input events when they are written or referenced
+		EpisimConfigGroup.WriteEvents writeEvents = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).getWriteEvents();
+		if (writeEvents == EpisimConfigGroup.WriteEvents.all || writeEvents == EpisimConfigGroup.WriteEvents.reference)
+			manager.addHandler(reporting);
+		else
+			resetReporting = writeEvents != EpisimConfigGroup.WriteEvents.none;
+
+		ControlerUtils.checkConfigConsistencyAndWriteToLog(config, "Just before starting iterations");
+	}
+
+	private void finish() {
 		reporting.close();
+		monitor.close();
+		metrics.finish();
 	}
 
 	/**
@@ -88,15 +346,206 @@ public final class EpisimRunner {
 	 */
 	boolean doStep(final ReplayHandler replay, InfectionEventHandler handler, int iteration) {
 
-		manager.resetHandlers(iteration);
-		if (handler.isFinished())
+		DayEvent event = new DayEvent();
+		event.begin();
+
+		if (!startDay(handler, iteration))
+			return false;
+
+		simulateDay(replay, handler, iteration, event);
+		return true;
+	}
+
+	/**
+	 * Resets all handlers for a new day, checks the stop criterion and writes a checkpoint if needed.
+	 *
+	 * @return false, when the simulation should end
+	 */
+	private boolean startDay(InfectionEventHandler handler, int iteration) {
+		resetDay(iteration);
+		if (handler.isFinished() || isStopped(handler, iteration))
 			return false;
 
+		if (checkpointInterval > 0 && iteration > 0 && iteration % checkpointInterval == 0)
+			writeCheckpoint(handler, iteration);
+
+		return true;
+	}
+
+	/**
+	 * Checks the stop criterion for a day and reports the reason if the simulation should end.
+	 */
+	private boolean isStopped(InfectionEventHandler handler, int iteration) {
+		String reason = stop.check(handler.getReport(), iteration);
+		if (reason == null)
+			return false;
+
+		log.info("Stopping simulation on day {}: {}", iteration, reason);
+		reporting.reportStop(iteration, reason);
+		return true;
+	}
+
+	private void resetDay(int iteration) {
+		monitor.startDay();
+		manager.resetHandlers(iteration);
+
+		// same order as if reporting was registered as handler
+		if (resetReporting)
+			reporting.reset(iteration);
+
+		// reports of the previous day are complete, regardless of the event output
+		reporting.flushReports();
+	}
+
+	/**
+	 * Replays the events of a day, after all handlers have been reset.
+	 */
+	private void simulateDay(final ReplayHandler replay, InfectionEventHandler handler, int iteration, DayEvent event) {
 
 		// Process all events
+		long start = System.nanoTime();
 		replay.replayEvents(manager, iteration);
 
-		return true;
+		endDay(replay, handler, iteration, event, start);
+	}
+
+	/**
+	 * Records the statistics of a day, after its events have been replayed.
+	 *
+	 * @param start start time of the replay in nanoseconds
+	 */
+	private void endDay(final ReplayHandler replay, InfectionEventHandler handler, int iteration, DayEvent event, long start) {
+
+		long replayTime = System.nanoTime() - start;
+
+		monitor.stop(PerformanceMonitor.Phase.replay, start);
+		monitor.count(PerformanceMonitor.Counter.events, replay.getNumberOfEvents());
+
+		monitor.endDay(iteration);
+		metrics.update(iteration, replay.getNumberOfEvents(), replayTime, monitor, handler.getReports());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.day = iteration;
+			event.events = replay.getNumberOfEvents();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Writes the state at the beginning of {@code iteration}, after all handlers have been reset.
+	 */
+	private void writeSnapshot(InfectionEventHandler handler, int iteration, Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))))) {
+			new Header(iteration, reporting.getOutputSizes()).write(out);
+			handler.writeState(out);
+			stop.write(out);
+		}
+	}
+
+	/**
+	 * Writes a checkpoint of the current day and removes older ones.
+	 * The file is written under a temporary name, so that an interrupted write never leaves an incomplete checkpoint.
+	 */
+	private void writeCheckpoint(InfectionEventHandler handler, int iteration) {
+
+		Path checkpoints = Path.of(config.controler().getOutputDirectory(), CHECKPOINTS);
+		Path file = checkpoints.resolve(String.format("day_%03d.bin.gz", iteration));
+		Path tmp = checkpoints.resolve(file.getFileName() + ".tmp");
+
+		try {
+			Files.createDirectories(checkpoints);
+			writeSnapshot(handler, iteration, tmp);
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			try (Stream<Path> files = Files.list(checkpoints)) {
+				for (Path f : (Iterable<Path>) files::iterator) {
+					if (!f.equals(file) && f.getFileName().toString().startsWith("day_"))
+						Files.delete(f);
+				}
+			}
+
+		} catch (IOException e) {
+			log.error("Could not write checkpoint", e);
+			throw new UncheckedIOException(e);
+		}
+
+		log.info("Written checkpoint {}", file);
+	}
+
+	/**
+	 * Latest checkpoint that can be read, or null if there is none.
+	 */
+	@Nullable
+	private static Path findLatestCheckpoint(Path checkpoints) throws IOException {
+		if (!Files.exists(checkpoints)) return null;
+
+		List<Path> files;
+		try (Stream<Path> stream = Files.list(checkpoints)) {
+			files = stream.filter(f -> f.getFileName().toString().matches("day_\\d+\\.bin\\.gz"))
+					.sorted(Comparator.comparing(EpisimRunner::getCheckpointDay).reversed())
+					.collect(Collectors.toList());
+		}
+
+		for (Path file : files) {
+			try {
+				readHeader(file);
+				return file;
+			} catch (IOException | IllegalStateException e) {
+				log.warn("Ignoring invalid checkpoint {}", file, e);
+			}
+		}
+
+		return null;
+	}
+
+	private static int getCheckpointDay(Path file) {
+		String name = file.getFileName().toString();
+		return Integer.parseInt(name.substring(4, name.indexOf('.')));
+	}
+
+	private static Header readHeader(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			return Header.read(in, file);
+		}
+	}
+
+	/**
+	 * Header of a snapshot, with the day and the size of all reports at that time.
+	 */
+	private static final class Header {
+
+		private final int iteration;
+		private final Map<String, Long> sizes;
+
+		private Header(int iteration, Map<String, Long> sizes) {
+			this.iteration = iteration;
+			this.sizes = sizes;
+		}
+
+		private static Header read(DataInput in, Path file) throws IOException {
+			int version = in.readInt();
+			if (version != SNAPSHOT_VERSION)
+				throw new IllegalStateException("Snapshot " + file + " has unsupported version " + version);
+
+			int iteration = in.readInt();
+			Map<String, Long> sizes = new LinkedHashMap<>();
+			int n = in.readInt();
+			for (int i = 0; i < n; i++)
+				sizes.put(in.readUTF(), in.readLong());
+
+			return new Header(iteration, sizes);
+		}
+
+		private void write(DataOutput out) throws IOException {
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeInt(iteration);
+			out.writeInt(sizes.size());
+			for (Map.Entry<String, Long> e : sizes.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeLong(e.getValue());
+			}
+		}
 	}
 
 }
@@ -23,6 +23,12 @@ package org.matsim.episim;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.SplittableRandom;
+
 /**
  * Common utility class for episim.
  */
@@ -58,4 +64,49 @@ public final class EpisimUtils {
 		config.controler().setOutputDirectory(outdir.toString());
 
 	}
+
+	/**
+	 * Writes the internal state of a {@link SplittableRandom}, which is not accessible otherwise.
+	 * Requires {@code --add-opens java.base/java.util=ALL-UNNAMED} on newer java versions.
+	 */
+	public static void writeRandom(SplittableRandom rnd, DataOutput out) throws IOException {
+		try {
+			out.writeLong(RandomFields.SEED.getLong(rnd));
+			out.writeLong(RandomFields.GAMMA.getLong(rnd));
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not access state of random generator", e);
+		}
+	}
+
+	/**
+	 * Restores the state written by {@link #writeRandom(SplittableRandom, DataOutput)} into an existing instance,
+	 * which may be shared by multiple models.
+	 */
+	public static void readRandom(SplittableRandom rnd, DataInput in) throws IOException {
+		try {
+			RandomFields.SEED.setLong(rnd, in.readLong());
+			RandomFields.GAMMA.setLong(rnd, in.readLong());
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not access state of random generator", e);
+		}
+	}
+
+	/**
+	 * Lazily resolved fields of {@link SplittableRandom}.
+	 */
+	private static final class RandomFields {
+
+		private static final Field SEED = getField("seed");
+		private static final Field GAMMA = getField("gamma");
+
+		private static Field getField(String name) {
+			try {
+				Field field = SplittableRandom.class.getDeclaredField(name);
+				field.setAccessible(true);
+				return field;
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				throw new IllegalStateException("Random generator state can not be accessed, java.util needs to be opened via --add-opens", e);
+			}
+		}
+	}
 }
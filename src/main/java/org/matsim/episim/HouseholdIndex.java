@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.inject.Inject;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Maps the {@code homeId} attribute of persons to integer household ids and stores the members of each household
+ * in one compact array, where the members of household {@code h} are stored between {@code offsets[h]} and {@code offsets[h + 1]}.
+ * Persons are registered when they are created, the compact layout is built once when it is first needed afterwards.
+ */
+public final class HouseholdIndex {
+
+	private final MutableObjectIntMap<String> households = new ObjectIntHashMap<>();
+	private final List<EpisimPerson> registered = new ArrayList<>();
+
+	private int[] offsets = new int[1];
+	private EpisimPerson[] members = new EpisimPerson[0];
+
+	/**
+	 * Persons were registered since the last build.
+	 */
+	private boolean dirty = false;
+
+	@Inject
+	public HouseholdIndex() {
+	}
+
+	/**
+	 * Assign a person to the household given by its {@code homeId} attribute.
+	 */
+	void register(EpisimPerson person) {
+		String homeId = (String) person.getAttributes().getAttribute("homeId");
+		if (homeId == null) return;
+
+		person.setHousehold(households.getIfAbsentPut(homeId, households.size()));
+		registered.add(person);
+		dirty = true;
+	}
+
+	/**
+	 * Returns the household id for {@code homeId}, or -1 if there is no such household.
+	 */
+	public int getHousehold(String homeId) {
+		return households.getIfAbsent(homeId, -1);
+	}
+
+	/**
+	 * Number of known households.
+	 */
+	public int getNumberOfHouseholds() {
+		return households.size();
+	}
+
+	/**
+	 * Number of persons in a household.
+	 */
+	public int size(int household) {
+		build();
+		return offsets[household + 1] - offsets[household];
+	}
+
+	/**
+	 * Calls {@code action} for every member of a household.
+	 */
+	public void forEachMember(int household, Consumer<EpisimPerson> action) {
+		build();
+		for (int i = offsets[household]; i < offsets[household + 1]; i++)
+			action.accept(members[i]);
+	}
+
+	/**
+	 * Build the compact member arrays with a counting sort over all registered persons.
+	 */
+	private void build() {
+		if (!dirty) return;
+
+		int[] start = new int[households.size() + 1];
+		for (EpisimPerson p : registered)
+			start[p.getHousehold() + 1]++;
+
+		for (int i = 1; i < start.length; i++)
+			start[i] += start[i - 1];
+
+		EpisimPerson[] sorted = new EpisimPerson[registered.size()];
+		int[] next = start.clone();
+		for (EpisimPerson p : registered)
+			sorted[next[p.getHousehold()]++] = p;
+
+		offsets = start;
+		members = sorted;
+		dirty = false;
+	}
+
+}
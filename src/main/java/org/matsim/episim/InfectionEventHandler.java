@@ -21,7 +21,6 @@
 package org.matsim.episim;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.logging.log4j.LogManager;
@@ -41,6 +40,8 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.episim.EpisimPerson.DiseaseStatus;
+import org.matsim.episim.jfr.PolicyUpdateEvent;
+import org.matsim.episim.model.FaceMask;
 import org.matsim.episim.model.InfectionModel;
 import org.matsim.episim.model.ProgressionModel;
 import org.matsim.episim.policy.Restriction;
@@ -49,8 +50,15 @@ import org.matsim.facilities.ActivityFacility;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.Vehicle;
 
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 /**
  * Main event handler of episim.
@@ -110,7 +118,17 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 	private final EpisimConfigGroup episimConfig;
 	private final TracingConfigGroup tracingConfig;
 	private final EpisimReporting reporting;
+	private final HouseholdIndex households;
+	private final PopulationSkeleton skeleton;
 	private final SplittableRandom rnd;
+	private final PerformanceMonitor monitor;
+
+	/**
+	 * Workload statistics of the first simulated day, null if disabled or already written.
+	 */
+	@Nullable
+	private WorkloadAnalysis workload;
+	private final String outputBase;
 
 	/**
 	 * Local random, e.g. used for person initialization.
@@ -125,17 +143,24 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 	 * Most recent infection report for all persons.
 	 */
 	private EpisimReporting.InfectionReport report;
+	private Map<String, EpisimReporting.InfectionReport> reports;
 
 	@Inject
 	public InfectionEventHandler(Config config, Scenario scenario, ProgressionModel progressionModel,
-								 EpisimReporting reporting, InfectionModel infectionModel, SplittableRandom rnd) {
+								 EpisimReporting reporting, HouseholdIndex households, PopulationSkeleton skeleton, InfectionModel infectionModel,
+								 SplittableRandom rnd, PerformanceMonitor monitor) {
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		this.tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
 		this.scenario = scenario;
 		this.policy = episimConfig.createPolicyInstance();
 		this.restrictions = episimConfig.createInitialRestrictions();
 		this.reporting = reporting;
+		this.households = households;
+		this.skeleton = skeleton;
 		this.rnd = rnd;
+		this.monitor = monitor;
+		this.workload = episimConfig.isAnalyzeWorkload() ? new WorkloadAnalysis(episimConfig) : null;
+		this.outputBase = EpisimReporting.getOutputBase(config);
 		this.localRnd = new SplittableRandom(config.global().getRandomSeed() + 65536);
 		this.progressionModel = progressionModel;
 		this.infectionModel = infectionModel;
@@ -170,6 +195,13 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 		return report;
 	}
 
+	/**
+	 * Infection reports per district created at the beginning of the current day.
+	 */
+	Map<String, EpisimReporting.InfectionReport> getReports() {
+		return reports;
+	}
+
 	/**
 	 * Returns true if more iterations won't change the results anymore and the simulation is finished.
 	 */
@@ -201,9 +233,14 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 			}
 		}
 
+		long start = monitor.start();
 		infectionModel.infectionDynamicsFacility(episimPerson, episimFacility, now, activityEndEvent.getActType());
+		monitor.stop(PerformanceMonitor.Phase.infection, start);
 		double timeSpent = now - episimFacility.getContainerEnteringTime(episimPerson.getPersonId());
-		episimPerson.addSpentTime(activityEndEvent.getActType(), timeSpent);
+		reporting.reportSpentTime(activityEndEvent.getActType(), timeSpent);
+
+		if (iteration == 1 && workload != null)
+			workload.leave(episimFacility, activityEndEvent.getActType(), timeSpent);
 
 		episimFacility.removePerson(episimPerson.getPersonId());
 		if (episimPerson.getCurrentPositionInTrajectory() == 0) {
@@ -241,6 +278,9 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 		// add person to vehicle and memorize entering time:
 		episimVehicle.addPerson(episimPerson, now);
 
+		if (iteration == 1 && workload != null)
+			workload.enter(episimVehicle, "pt");
+
 	}
 
 	@Override
@@ -263,12 +303,17 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 
 		EpisimPerson episimPerson = episimVehicle.getPerson(leavesVehicleEvent.getPersonId());
 
+		long start = monitor.start();
 		infectionModel.infectionDynamicsVehicle(episimPerson, episimVehicle, now);
+		monitor.stop(PerformanceMonitor.Phase.infection, start);
 
 		double timeSpent = now - episimVehicle.getContainerEnteringTime(episimPerson.getPersonId());
 
 		// This type depends on the params defined in the scenario
-		episimPerson.addSpentTime("pt", timeSpent);
+		reporting.reportSpentTime("pt", timeSpent);
+
+		if (iteration == 1 && workload != null)
+			workload.leave(episimVehicle, "pt", timeSpent);
 
 		// remove person from vehicle:
 		episimVehicle.removePerson(episimPerson.getPersonId());
@@ -294,6 +339,9 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 		// add person to facility
 		episimFacility.addPerson(episimPerson, now);
 
+		if (iteration == 1 && workload != null)
+			workload.enter(episimFacility, activityStartEvent.getActType());
+
 		episimPerson.setLastFacilityId(episimFacilityId.toString());
 
 		handlePersonTrajectory(episimPerson.getPersonId(), activityStartEvent.getActType());
@@ -315,9 +363,12 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 			attrs = new Attributes();
 		}
 
-		attrs.putAttribute(EpisimPerson.TRACING_ATTR, localRnd.nextDouble() < tracingConfig.getEquipmentRate());
+		EpisimPerson episimPerson = new EpisimPerson(id, attrs, reporting);
+		episimPerson.setTraceable(localRnd.nextDouble() < tracingConfig.getEquipmentRate());
+		reporting.registerPerson(episimPerson);
+		households.register(episimPerson);
 
-		return new EpisimPerson(id, attrs, reporting);
+		return episimPerson;
 	}
 
 	private Id<ActivityFacility> createEpisimFacilityId(HasFacilityId event) {
@@ -367,36 +418,58 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 
 		String district = episimConfig.getInitialInfectionDistrict();
 
-		List<EpisimPerson> candidates = this.personMap.values().stream()
-				.filter(p -> district == null || district.equals(p.getAttributes().getAttribute("district")))
-				.filter(p -> p.getDiseaseStatus() == DiseaseStatus.susceptible)
-				.collect(Collectors.toList());
+		SusceptiblePool pool = reporting.getSusceptiblePool(district);
 
-		if (candidates.size() < initialInfectionsLeft) {
+		// the whole population includes persons that are not susceptible anymore
+		boolean all = pool == null || pool.size() < initialInfectionsLeft;
+		if (all) {
 			log.warn("Not enough persons match the initial infection requirement, using whole population...");
-			candidates = Lists.newArrayList(this.personMap.values());
+			pool = reporting.getSusceptiblePool(null);
 		}
 
-		while (true) {
-			if (initialStartInfectionsLeft > 0) {
-				while(initialStartInfectionsLeft > 0) {
-					EpisimPerson randomPerson = candidates.get(rnd.nextInt(candidates.size()));
-					if (randomPerson.getDiseaseStatus() == DiseaseStatus.susceptible) {
-						randomPerson.setDiseaseStatus(now, DiseaseStatus.infectedButNotContagious);
-						log.warn("Person {} has initial infection", randomPerson.getPersonId());
-						initialStartInfectionsLeft--;
-						initialInfectionsLeft--;
+		// Draws are the same as from a list of candidates created at the beginning of this day, which still contains the persons infected here.
+		// Indices of these persons are kept, drawing them again is rejected.
+		int candidates = all ? pool.members() : pool.size();
+		List<Integer> drawn = new ArrayList<>();
+
+		// all initial start infections on the first day, afterwards one per day
+		int n = Math.max(initialStartInfectionsLeft, 1);
+
+		for (int i = 0; i < n; i++) {
+
+			if (pool.size() == 0) {
+				log.warn("No susceptible persons left for initial infections");
+				initialInfectionsLeft = 0;
+				initialStartInfectionsLeft = 0;
+				return;
+			}
+
+			EpisimPerson randomPerson = null;
+			while (randomPerson == null) {
+				int k = rnd.nextInt(candidates);
+				if (all) {
+					EpisimPerson p = pool.member(k);
+					if (p.getDiseaseStatus() == DiseaseStatus.susceptible)
+						randomPerson = p;
+				} else {
+					int pos = Collections.binarySearch(drawn, k);
+					if (pos < 0) {
+						// persons infected before have been removed from the pool
+						int insert = -pos - 1;
+						randomPerson = pool.get(k - insert);
+						drawn.add(insert, k);
 					}
 				}
-				break;
-			}
-			EpisimPerson randomPerson = candidates.get(rnd.nextInt(candidates.size()));
-			if (randomPerson.getDiseaseStatus() == DiseaseStatus.susceptible) {
-				randomPerson.setDiseaseStatus(now, DiseaseStatus.infectedButNotContagious);
-				log.warn("Person {} has initial infection", randomPerson.getPersonId());
-				initialInfectionsLeft--;
-				break;
 			}
+
+			// the infected person is removed from the pool by the status change
+			randomPerson.setDiseaseStatus(now, DiseaseStatus.infectedButNotContagious);
+			log.warn("Person {} has initial infection", randomPerson.getPersonId());
+
+			if (initialStartInfectionsLeft > 0)
+				initialStartInfectionsLeft--;
+
+			initialInfectionsLeft--;
 		}
 
 	}
@@ -440,11 +513,29 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 	@Override
 	public void reset(int iteration) {
 
+		// statistics of the first simulated day are complete, before persons are moved back to their first facility
+		if (iteration == 2 && workload != null) {
+			double now = EpisimUtils.getCorrectedTime(0, iteration);
+			for (EpisimFacility facility : pseudoFacilityMap.values())
+				workload.leaveAll(facility, now);
+			for (EpisimVehicle vehicle : vehicleMap.values())
+				workload.leaveAll(vehicle, now);
+
+			workload.write(outputBase + "workload.tsv");
+			workload = null;
+		}
+
+		long start = monitor.start();
 		for (EpisimPerson person : personMap.values()) {
+			// trajectories are complete after the first day
+			if (iteration == 1)
+				person.shareTrajectory(skeleton);
+
 			checkAndHandleEndOfNonCircularTrajectory(person);
 			person.setCurrentPositionInTrajectory(0);
 			progressionModel.updateState(person, iteration);
 		}
+		monitor.stop(PerformanceMonitor.Phase.progression, start);
 
 		this.iteration = iteration;
 
@@ -456,17 +547,32 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 			insertStationaryAgents();
 		}
 
-		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(personMap.values(), iteration);
+		start = monitor.start();
+		this.reports = reporting.createReports(personMap.values(), iteration);
 		this.report = reports.get("total");
 
 		reporting.reporting(reports, iteration);
-		reporting.reportTimeUse(restrictions.keySet(), personMap.values(), iteration);
+		reporting.reportTimeUse(personMap.values(), iteration);
+		reporting.reportContacts(iteration);
+		monitor.stop(PerformanceMonitor.Phase.reports, start);
+
+		start = monitor.start();
+		PolicyUpdateEvent event = new PolicyUpdateEvent();
+		event.begin();
 
 		ImmutableMap<String, Restriction> im = ImmutableMap.copyOf(this.restrictions);
 		policy.updateRestrictions(report, im);
 		infectionModel.setRestrictionsForIteration(iteration, im);
 		reporting.reportRestrictions(restrictions, iteration);
 
+		event.end();
+		if (event.shouldCommit()) {
+			event.day = iteration;
+			event.policy = policy.getClass();
+			event.commit();
+		}
+		monitor.stop(PerformanceMonitor.Phase.policy, start);
+
 	}
 
 	private void checkAndHandleEndOfNonCircularTrajectory(EpisimPerson person) {
@@ -484,7 +590,7 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 				String actType = person.getTrajectory().get(person.getTrajectory().size() - 1);
 
 				infectionModel.infectionDynamicsFacility(person, lastFacility, now, actType);
-				person.addSpentTime(actType, now - lastFacility.getContainerEnteringTime(person.getPersonId()));
+				reporting.reportSpentTime(actType, now - lastFacility.getContainerEnteringTime(person.getPersonId()));
 
 
 				lastFacility.removePerson(person.getPersonId());
@@ -493,7 +599,7 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 			} else if (container instanceof EpisimVehicle && this.vehicleMap.containsKey(lastFacilityId)) {
 				EpisimVehicle lastVehicle = this.vehicleMap.get(lastFacilityId);
 				infectionModel.infectionDynamicsVehicle(person, lastVehicle, now);
-				person.addSpentTime("pt", now - lastVehicle.getContainerEnteringTime(person.getPersonId()));
+				reporting.reportSpentTime("pt", now - lastVehicle.getContainerEnteringTime(person.getPersonId()));
 
 				lastVehicle.removePerson(person.getPersonId());
 				EpisimFacility firstFacility = this.pseudoFacilityMap.get(firstFacilityId);
@@ -505,6 +611,143 @@ public final class InfectionEventHandler implements ActivityEndEventHandler, Per
 		}
 	}
 
+	/**
+	 * Writes the complete state of the simulation. Must be called at the beginning of a day, after {@link #reset(int)}.
+	 */
+	void writeState(DataOutput out) throws IOException {
+
+		out.writeInt(iteration);
+		out.writeInt(initialInfectionsLeft);
+		out.writeInt(initialStartInfectionsLeft);
+
+		EpisimUtils.writeRandom(rnd, out);
+		EpisimUtils.writeRandom(localRnd, out);
+
+		out.writeInt(restrictions.size());
+		for (Map.Entry<String, Restriction> e : restrictions.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeDouble(e.getValue().getRemainingFraction());
+			out.writeDouble(e.getValue().getExposure());
+			out.writeUTF(e.getValue().getRequireMask().name());
+		}
+
+		reporting.writeState(out);
+
+		List<EpisimPerson> persons = getRegistrationOrder();
+		out.writeInt(persons.size());
+		for (EpisimPerson person : persons) {
+			out.writeUTF(person.getPersonId().toString());
+			out.writeBoolean(person.isTraceable());
+			person.write(out);
+		}
+
+		for (EpisimPerson person : persons)
+			person.writeTraceableContacts(out);
+
+		out.writeInt(pseudoFacilityMap.size());
+		for (EpisimFacility facility : pseudoFacilityMap.values()) {
+			out.writeUTF(facility.getContainerId().toString());
+			facility.write(out);
+		}
+
+		out.writeInt(vehicleMap.size());
+		for (EpisimVehicle vehicle : vehicleMap.values()) {
+			out.writeUTF(vehicle.getContainerId().toString());
+			vehicle.write(out);
+		}
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(DataOutput)}, which replaces the {@link #reset(int)} of that day.
+	 * The handler must not have processed any events before.
+	 */
+	void readState(DataInput in) throws IOException {
+
+		iteration = in.readInt();
+		initialInfectionsLeft = in.readInt();
+		initialStartInfectionsLeft = in.readInt();
+
+		EpisimUtils.readRandom(rnd, in);
+		EpisimUtils.readRandom(localRnd, in);
+
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			String act = in.readUTF();
+			Restriction r = restrictions.get(act);
+			if (r == null)
+				throw new IllegalStateException("Restriction for " + act + " is not configured");
+
+			r.update(Restriction.of(in.readDouble(), in.readDouble(), FaceMask.valueOf(in.readUTF())));
+		}
+
+		reporting.readState(in);
+
+		// persons are registered in the original order, so that household and district indices are the same
+		n = in.readInt();
+		List<EpisimPerson> persons = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Id<Person> id = Id.createPersonId(in.readUTF());
+			Person person = scenario.getPopulation().getPersons().get(id);
+			Attributes attrs = person != null ? person.getAttributes() : new Attributes();
+
+			EpisimPerson episimPerson = new EpisimPerson(id, attrs, reporting);
+			episimPerson.setTraceable(in.readBoolean());
+			episimPerson.read(in);
+			episimPerson.shareTrajectory(skeleton);
+
+			personMap.put(id, episimPerson);
+			reporting.registerPerson(episimPerson);
+			households.register(episimPerson);
+			persons.add(episimPerson);
+		}
+
+		Function<String, EpisimPerson> lookup = id -> personMap.get(Id.createPersonId(id));
+		for (EpisimPerson person : persons)
+			person.readTraceableContacts(in, lookup);
+
+		n = in.readInt();
+		for (int i = 0; i < n; i++)
+			pseudoFacilityMap.computeIfAbsent(Id.create(in.readUTF(), ActivityFacility.class), EpisimFacility::new).read(in, lookup);
+
+		n = in.readInt();
+		for (int i = 0; i < n; i++)
+			vehicleMap.computeIfAbsent(Id.createVehicleId(in.readUTF()), EpisimVehicle::new).read(in, lookup);
+
+		// statistics are only collected if the first simulated day is part of this run
+		if (iteration > 1)
+			workload = null;
+
+		this.reports = reporting.createReports(personMap.values(), iteration);
+		this.report = reports.get("total");
+
+		infectionModel.setRestrictionsForIteration(iteration, ImmutableMap.copyOf(this.restrictions));
+	}
+
+	/**
+	 * Persons in the order they have been registered at the {@link HouseholdIndex}, followed by persons without household.
+	 */
+	private List<EpisimPerson> getRegistrationOrder() {
+		List<EpisimPerson> persons = new ArrayList<>(personMap.size());
+		for (int i = 0; i < households.getNumberOfHouseholds(); i++)
+			households.forEachMember(i, persons::add);
+
+		for (EpisimPerson person : personMap.values()) {
+			if (person.getHousehold() < 0)
+				persons.add(person);
+		}
+
+		return persons;
+	}
+
+	/**
+	 * Copies output that has been written once at the beginning of the run in {@code directory}.
+	 */
+	void appendOutput(Path directory) throws IOException {
+		Path file = directory.resolve(Path.of(outputBase + "workload.tsv").getFileName());
+		if (episimConfig.isAnalyzeWorkload() && Files.exists(file))
+			Files.copy(file, Path.of(outputBase + "workload.tsv"), StandardCopyOption.REPLACE_EXISTING);
+	}
+
 	public Collection<EpisimPerson> getPersons() {
 		return Collections.unmodifiableCollection(personMap.values());
 	}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.inject.Inject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latest state of one running simulation, updated by the {@link EpisimRunner} at the end of each day and served by the {@link MetricsServer}.
+ */
+public final class LiveMetrics {
+
+	private volatile Map<String, Object> snapshot = Collections.emptyMap();
+
+	@Inject
+	public LiveMetrics() {
+	}
+
+	/**
+	 * Update the metrics after a day has been simulated.
+	 *
+	 * @param replayNanos time needed to replay all events
+	 */
+	void update(int iteration, long events, long replayNanos, PerformanceMonitor monitor,
+				Map<String, EpisimReporting.InfectionReport> reports) {
+
+		Map<String, Object> s = new LinkedHashMap<>();
+		s.put("day", iteration);
+		s.put("finished", false);
+		s.put("updated", System.currentTimeMillis());
+		s.put("eventsPerSecond", replayNanos > 0 ? events / (replayNanos / 1e9) : 0);
+
+		if (monitor.isEnabled()) {
+			Map<String, Double> phases = new LinkedHashMap<>();
+			for (PerformanceMonitor.Phase phase : PerformanceMonitor.Phase.values())
+				phases.put(phase.name(), monitor.getLastTime(phase));
+
+			s.put("phases", phases);
+		}
+
+		s.put("reports", reports);
+		snapshot = s;
+	}
+
+	/**
+	 * Mark the simulation as finished, keeping the last state.
+	 */
+	void finish() {
+		Map<String, Object> s = new LinkedHashMap<>(snapshot);
+		s.put("finished", true);
+		s.put("updated", System.currentTimeMillis());
+		snapshot = s;
+	}
+
+	/**
+	 * Current state as a map, which can be serialized as json.
+	 */
+	public Map<String, Object> getSnapshot() {
+		return snapshot;
+	}
+}
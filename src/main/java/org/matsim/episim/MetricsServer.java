@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded http server, which serves the {@link LiveMetrics} of all simulations running in this process as json.
+ * Usage:
+ * <pre>
+ *     curl http://localhost:port/metrics
+ * </pre>
+ */
+public final class MetricsServer implements Closeable {
+
+	private static final Logger log = LogManager.getLogger(MetricsServer.class);
+
+	private final HttpServer server;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Map<String, LiveMetrics> runs = new ConcurrentSkipListMap<>();
+	private final long started = System.currentTimeMillis();
+
+	/**
+	 * Start the server on given port, it is only reachable from the local machine.
+	 */
+	public MetricsServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", this::handle);
+		server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "metrics-server");
+			t.setDaemon(true);
+			return t;
+		}));
+		server.start();
+
+		log.info("Serving metrics on http://localhost:{}/metrics", server.getAddress().getPort());
+	}
+
+	/**
+	 * Port the server is listening on.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Add the metrics of a simulation.
+	 *
+	 * @param name unique name of the run, e.g. its output directory
+	 */
+	public void register(String name, LiveMetrics metrics) {
+		runs.put(name, metrics);
+	}
+
+	/**
+	 * Create the json content served by this server.
+	 */
+	Map<String, Object> createContent() {
+		Map<String, Object> content = new LinkedHashMap<>();
+
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		content.put("uptime", System.currentTimeMillis() - started);
+		content.put("heapUsed", heap.getUsed());
+		content.put("heapMax", heap.getMax());
+
+		Map<String, Object> snapshots = new LinkedHashMap<>();
+		runs.forEach((name, metrics) -> snapshots.put(name, metrics.getSnapshot()));
+		content.put("runs", snapshots);
+
+		return content;
+	}
+
+	private void handle(HttpExchange exchange) {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			byte[] body = mapper.writeValueAsBytes(createContent());
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} catch (IOException e) {
+			log.warn("Could not serve metrics", e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
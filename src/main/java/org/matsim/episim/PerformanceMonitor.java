@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.inject.Inject;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.reporting.EpisimWriter;
+
+import java.io.BufferedWriter;
+import java.util.Arrays;
+
+/**
+ * Measures time spent in the phases of a simulation day and counts the work done, written to {@code performance.tsv}.
+ * When disabled all methods return immediately without measuring anything.
+ * <p>
+ * Phases may be nested, e.g. {@link Phase#infection} is part of {@link Phase#replay}.
+ */
+public final class PerformanceMonitor {
+
+	/**
+	 * Monitor that never measures anything.
+	 */
+	public static final PerformanceMonitor DISABLED = new PerformanceMonitor();
+
+	private final boolean enabled;
+	private final EpisimWriter writer;
+	private final BufferedWriter out;
+
+	private final long[] times = new long[Phase.values().length];
+	private final long[] counts = new long[Counter.values().length];
+	/**
+	 * Times of the last finished day.
+	 */
+	private final long[] lastTimes = new long[Phase.values().length];
+
+	private long dayStart;
+	private long writerStalls;
+
+	@Inject
+	PerformanceMonitor(Config config, EpisimWriter writer) {
+		this.enabled = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).isWritePerformance();
+		this.writer = writer;
+		this.out = enabled ? EpisimWriter.prepare(EpisimReporting.getOutputBase(config) + "performance.tsv", Columns.class) : null;
+	}
+
+	private PerformanceMonitor() {
+		this.enabled = false;
+		this.writer = null;
+		this.out = null;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Start time for a measurement, to be passed to {@link #stop(Phase, long)}.
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Add the time elapsed since {@code start} to a phase.
+	 */
+	public void stop(Phase phase, long start) {
+		if (enabled)
+			times[phase.ordinal()] += System.nanoTime() - start;
+	}
+
+	/**
+	 * Increment a counter by one.
+	 */
+	public void count(Counter counter) {
+		if (enabled)
+			counts[counter.ordinal()]++;
+	}
+
+	/**
+	 * Increment a counter.
+	 */
+	public void count(Counter counter, long n) {
+		if (enabled)
+			counts[counter.ordinal()] += n;
+	}
+
+	/**
+	 * Mark the beginning of a day.
+	 */
+	void startDay() {
+		if (enabled)
+			dayStart = System.nanoTime();
+	}
+
+	/**
+	 * Write the measurements of the day and reset all values.
+	 */
+	void endDay(int iteration) {
+		if (!enabled) return;
+
+		long total = System.nanoTime() - dayStart;
+
+		// stalls are accumulated by the writer over the whole run
+		long stalls = writer.getStallTime();
+		times[Phase.writer.ordinal()] = stalls - writerStalls;
+		writerStalls = stalls;
+
+		String[] row = new String[Columns.values().length];
+		row[Columns.day.ordinal()] = String.valueOf(iteration);
+		row[Columns.total.ordinal()] = toMillis(total);
+		for (Phase phase : Phase.values())
+			row[Columns.valueOf(phase.name()).ordinal()] = toMillis(times[phase.ordinal()]);
+		for (Counter counter : Counter.values())
+			row[Columns.valueOf(counter.name()).ordinal()] = String.valueOf(counts[counter.ordinal()]);
+
+		writer.append(out, row);
+
+		System.arraycopy(times, 0, lastTimes, 0, times.length);
+		Arrays.fill(times, 0);
+		Arrays.fill(counts, 0);
+	}
+
+	/**
+	 * Time in milliseconds spent in a phase on the last finished day.
+	 */
+	public double getLastTime(Phase phase) {
+		return lastTimes[phase.ordinal()] / 1_000_000d;
+	}
+
+	void close() {
+		if (enabled)
+			writer.close(out);
+	}
+
+	private static String toMillis(long nanos) {
+		return String.valueOf(nanos / 1_000_000d);
+	}
+
+	/**
+	 * Measured phases.
+	 */
+	public enum Phase {
+		/**
+		 * Dispatch of all input events, including the infection model.
+		 */
+		replay,
+		/**
+		 * Calls of the {@link org.matsim.episim.model.InfectionModel}.
+		 */
+		infection,
+		/**
+		 * Disease progression at the beginning of the day.
+		 */
+		progression,
+		/**
+		 * Creation and writing of reports.
+		 */
+		reports,
+		/**
+		 * Update of the policy and restrictions.
+		 */
+		policy,
+		/**
+		 * Time spent waiting for the writer, because it could not keep up.
+		 */
+		writer
+	}
+
+	/**
+	 * Counted quantities.
+	 */
+	public enum Counter {
+		/**
+		 * Replayed input events.
+		 */
+		events,
+		/**
+		 * Contacts drawn by the infection model.
+		 */
+		contacts,
+		/**
+		 * New infections.
+		 */
+		infections,
+		/**
+		 * Random numbers drawn by the infection model for contact selection and infection trials.
+		 */
+		rngDraws
+	}
+
+	enum Columns {
+		day, total, replay, infection, progression, reports, policy, writer, events, contacts, infections, rngDraws
+	}
+}
@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.inject.Inject;
+
+import java.util.List;
+
+/**
+ * Immutable parts of the population, which depend only on the input events and can be shared read-only by all simulations
+ * of the same scenario. Persons only keep their mutable state, while equal trajectories are stored once.
+ * This class is thread-safe, so that one instance can be used by all simulations running in the same JVM.
+ */
+public final class PopulationSkeleton {
+
+	private final Interner<List<String>> trajectories = Interners.newStrongInterner();
+
+	@Inject
+	public PopulationSkeleton() {
+	}
+
+	/**
+	 * Returns the shared immutable instance of a trajectory, which is equal to the given one.
+	 */
+	List<String> share(List<String> trajectory) {
+		return trajectories.intern(ImmutableList.copyOf(trajectory));
+	}
+}
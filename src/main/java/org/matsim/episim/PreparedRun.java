@@ -26,6 +26,7 @@ import org.apache.logging.log4j.Logger;
 import org.matsim.core.config.Config;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Class holding the result of {@link BatchRun#prepare(Class, Class)} with all information of the run.
@@ -50,7 +51,7 @@ public final class PreparedRun {
 	public final List<List<Object>> parameterValues;
 
 	/**
-	 * All generated runs.
+	 * All generated runs. Each access of an index creates a new {@link Run}, whose config has not been created yet.
 	 */
 	public final List<Run> runs;
 
@@ -123,19 +124,85 @@ public final class PreparedRun {
 	}
 
 	/**
-	 * One individual parameter set of a run.
+	 * First day on which parameters described by an {@link BatchRun.Option} with a day are in effect, or -1 if there is none.
+	 */
+	public int getDivergenceDay() {
+		return setup.getOptions().stream()
+				.filter(opt -> opt.day >= 0 && !opt.measures.isEmpty())
+				.mapToInt(opt -> opt.day)
+				.min().orElse(-1);
+	}
+
+	/**
+	 * Groups runs that differ only in parameters described by an {@link BatchRun.Option} with a day.
+	 * Runs of a group are expected to be identical until {@link #getDivergenceDay()}. The base case is always in its own group.
+	 * No configs are created here, runs whose config still differs, e.g. in the random seed, need to be detected when the group is executed.
+	 */
+	public List<List<Run>> groupByPrefix() {
+
+		Set<String> delayed = new HashSet<>();
+		for (BatchRun.Option option : setup.getOptions()) {
+			if (option.day >= 0)
+				option.measures.forEach(m -> delayed.add(m.getRight()));
+		}
+
+		Map<List<Object>, List<Run>> groups = new LinkedHashMap<>();
+		for (int idx = 0; idx < runs.size(); idx++) {
+
+			Run run = runs.get(idx);
+			List<Object> key = new ArrayList<>();
+
+			if (run.params.size() != parameter.size())
+				key.add(run);
+			else {
+				for (int i = 0; i < parameter.size(); i++) {
+					if (!delayed.contains(parameter.get(i)))
+						key.add(run.params.get(i));
+				}
+			}
+
+			groups.computeIfAbsent(key, k -> new ArrayList<>()).add(run);
+		}
+
+		return new ArrayList<>(groups.values());
+	}
+
+	/**
+	 * One individual parameter set of a run. The config is created when it is first needed.
 	 */
 	public static final class Run {
 
 		public final int id;
 		public final List<Object> params;
-		public final Config config;
+		private Supplier<Config> factory;
+		private Config config;
 
 		public Run(int id, List<Object> params, Config config) {
 			this.id = id;
 			this.params = params;
 			this.config = config;
 		}
+
+		/**
+		 * Constructor with a config that is created lazily.
+		 */
+		public Run(int id, List<Object> params, Supplier<Config> factory) {
+			this.id = id;
+			this.params = params;
+			this.factory = factory;
+		}
+
+		/**
+		 * Config of this run, which is created on first access. The same instance is returned afterwards.
+		 */
+		public synchronized Config getConfig() {
+			if (config == null) {
+				config = factory.get();
+				factory = null;
+			}
+
+			return config;
+		}
 	}
 
 }
@@ -61,40 +61,51 @@ public final class ReplayHandler {
 				events.get(events.size() - 1).getTime());
 	}
 
+	/**
+	 * Number of events replayed each day.
+	 */
+	public int getNumberOfEvents() {
+		return events.size();
+	}
+
 	/**
 	 * Replays event add modifies attributes based on current iteration.
 	 */
 	public void replayEvents(final EventsManager manager, final int iteration) {
+		replayEvents(List.of(manager), iteration);
+	}
+
+	/**
+	 * Replays the events once and passes each of them to all {@code managers}, so that several simulations can share one replay.
+	 * Handlers must not modify the events, because the same instances are seen by all of them.
+	 */
+	public void replayEvents(final List<EventsManager> managers, final int iteration) {
 		for (final Event e : events) {
 
+			final Event event;
 			if (e instanceof ActivityStartEvent) {
 				ActivityStartEvent ev = (ActivityStartEvent) e;
-				manager.processEvent(
-						new ActivityStartEvent(EpisimUtils.getCorrectedTime(ev.getTime(), iteration), ev.getPersonId(),
-								ev.getLinkId(), ev.getFacilityId(), ev.getActType(), ev.getCoord())
-				);
+				event = new ActivityStartEvent(EpisimUtils.getCorrectedTime(ev.getTime(), iteration), ev.getPersonId(),
+						ev.getLinkId(), ev.getFacilityId(), ev.getActType(), ev.getCoord());
 
 			} else if (e instanceof ActivityEndEvent) {
 				ActivityEndEvent ev = (ActivityEndEvent) e;
-				manager.processEvent(
-						new ActivityEndEvent(EpisimUtils.getCorrectedTime(ev.getTime(), iteration), ev.getPersonId(),
-								ev.getLinkId(), ev.getFacilityId(), ev.getActType())
-				);
+				event = new ActivityEndEvent(EpisimUtils.getCorrectedTime(ev.getTime(), iteration), ev.getPersonId(),
+						ev.getLinkId(), ev.getFacilityId(), ev.getActType());
 
 			} else if (e instanceof PersonEntersVehicleEvent) {
 				PersonEntersVehicleEvent ev = (PersonEntersVehicleEvent) e;
-				manager.processEvent(
-						new PersonEntersVehicleEvent(EpisimUtils.getCorrectedTime(e.getTime(), iteration), ev.getPersonId(), ev.getVehicleId())
-				);
+				event = new PersonEntersVehicleEvent(EpisimUtils.getCorrectedTime(e.getTime(), iteration), ev.getPersonId(), ev.getVehicleId());
 
 			} else if (e instanceof PersonLeavesVehicleEvent) {
 				PersonLeavesVehicleEvent ev = (PersonLeavesVehicleEvent) e;
-				manager.processEvent(
-						new PersonLeavesVehicleEvent(EpisimUtils.getCorrectedTime(e.getTime(), iteration), ev.getPersonId(), ev.getVehicleId())
-				);
+				event = new PersonLeavesVehicleEvent(EpisimUtils.getCorrectedTime(e.getTime(), iteration), ev.getPersonId(), ev.getVehicleId());
 
 			} else
-				manager.processEvent(e);
+				event = e;
+
+			for (int i = 0; i < managers.size(); i++)
+				managers.get(i).processEvent(event);
 		}
 	}
 
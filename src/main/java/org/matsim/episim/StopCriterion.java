@@ -0,0 +1,55 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Decides at the start of each day whether a simulation can be stopped early, because its outcome is already decided.
+ * A criterion that never triggers must not change the simulation in any way.
+ */
+public interface StopCriterion {
+
+	/**
+	 * Checks the report of the day.
+	 *
+	 * @param report infection statistics for the whole population at the start of the day
+	 * @return the reason why the simulation should stop, or null to continue
+	 */
+	@Nullable
+	String check(EpisimReporting.InfectionReport report, int day);
+
+	/**
+	 * Writes the state of the criterion into a snapshot. Criteria that depend on previous days need to store them here.
+	 */
+	default void write(DataOutput out) throws IOException {
+	}
+
+	/**
+	 * Restores the state written by {@link #write(DataOutput)}.
+	 */
+	default void read(DataInput in) throws IOException {
+	}
+
+}
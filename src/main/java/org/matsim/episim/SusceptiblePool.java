@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Index of susceptible persons that supports removal and drawing the k-th person in logarithmic time.
+ * Persons are ordered by the index of their id, which is also the iteration order of the person map.
+ * Sampling from this pool therefore selects the same persons as sampling from a list of all susceptible persons.
+ */
+final class SusceptiblePool {
+
+	/**
+	 * All members of this pool, sorted by id index once the pool is built.
+	 */
+	private EpisimPerson[] members = new EpisimPerson[16];
+	private int nMembers = 0;
+
+	/**
+	 * Position of each member in {@link #members}, mapped by id index.
+	 */
+	private final MutableIntIntMap slots = new IntIntHashMap();
+
+	/**
+	 * Fenwick tree with one entry for each susceptible member.
+	 */
+	private int[] tree = new int[1];
+	private int size = 0;
+
+	/**
+	 * Members were added since the last build.
+	 */
+	private boolean dirty = false;
+
+	/**
+	 * Add a new member to the pool, regardless of its status.
+	 */
+	void register(EpisimPerson person) {
+		if (nMembers == members.length)
+			members = Arrays.copyOf(members, members.length * 2);
+
+		members[nMembers++] = person;
+		dirty = true;
+	}
+
+	/**
+	 * Update the pool after a member changed its disease status.
+	 */
+	void update(EpisimPerson person, EpisimPerson.DiseaseStatus from, EpisimPerson.DiseaseStatus to) {
+		// status will be read when the pool is rebuild
+		if (dirty || from == to) return;
+
+		if (from == EpisimPerson.DiseaseStatus.susceptible)
+			change(person, -1);
+		else if (to == EpisimPerson.DiseaseStatus.susceptible)
+			change(person, 1);
+	}
+
+	/**
+	 * Number of susceptible persons in this pool.
+	 */
+	int size() {
+		build();
+		return size;
+	}
+
+	/**
+	 * Return the k-th susceptible person, ordered by id index.
+	 */
+	EpisimPerson get(int k) {
+		build();
+		if (k < 0 || k >= size) throw new IndexOutOfBoundsException("Index " + k + " out of bounds for size " + size);
+
+		// binary search for the first position where the prefix sum exceeds k
+		int pos = 0;
+		for (int step = Integer.highestOneBit(nMembers); step > 0; step >>= 1) {
+			int next = pos + step;
+			if (next <= nMembers && tree[next] <= k) {
+				pos = next;
+				k -= tree[next];
+			}
+		}
+
+		return members[pos];
+	}
+
+	/**
+	 * Number of all members, regardless of their status.
+	 */
+	int members() {
+		return nMembers;
+	}
+
+	/**
+	 * Return the k-th member regardless of its status, ordered by id index.
+	 */
+	EpisimPerson member(int k) {
+		build();
+		if (k < 0 || k >= nMembers) throw new IndexOutOfBoundsException("Index " + k + " out of bounds for size " + nMembers);
+
+		return members[k];
+	}
+
+	private void change(EpisimPerson person, int delta) {
+		int slot = slots.getIfAbsent(person.getPersonId().index(), -1);
+		if (slot < 0) return;
+
+		size += delta;
+		for (int i = slot + 1; i <= nMembers; i += i & -i)
+			tree[i] += delta;
+	}
+
+	/**
+	 * Sort the members and build the tree from their current status.
+	 */
+	private void build() {
+		if (!dirty) return;
+
+		Arrays.sort(members, 0, nMembers, Comparator.comparingInt(p -> p.getPersonId().index()));
+
+		slots.clear();
+		tree = new int[nMembers + 1];
+		size = 0;
+
+		for (int i = 0; i < nMembers; i++) {
+			slots.put(members[i].getPersonId().index(), i);
+			if (members[i].getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible) {
+				tree[i + 1]++;
+				size++;
+			}
+		}
+
+		// propagate the partial sums in linear time
+		for (int i = 1; i <= nMembers; i++) {
+			int parent = i + (i & -i);
+			if (parent <= nMembers)
+				tree[parent] += tree[i];
+		}
+
+		dirty = false;
+	}
+
+}
@@ -0,0 +1,187 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.matsim.episim.reporting.EpisimWriter;
+
+import java.io.BufferedWriter;
+import java.util.*;
+
+/**
+ * Characterizes the workload of a scenario during the first simulated day (iteration 1), when the containers are fully populated
+ * and stationary agents have been inserted. Persons that are still in a container at the end of the day leave it then.
+ * All statistics are grouped by container class, which is the name of the infection params of the activity or {@code pt} for vehicles.
+ * <p>
+ * Written to {@code workload.tsv} as rows of {@code class, metric, bin, value}:
+ * <ul>
+ *     <li>{@code containers}: number of distinct containers</li>
+ *     <li>{@code visits}: number of times a person left a container, including the stays until the end of the day</li>
+ *     <li>{@code peakOccupancy}: maximum number of persons in one container at the same time</li>
+ *     <li>{@code pairs}: number of pairs of persons that have been in the same container at the same time</li>
+ *     <li>{@code cost}: estimated operations of the infection model, i.e. copying all other persons and drawing the contacts</li>
+ *     <li>{@code occupancy}: histogram of container size when a person leaves, bins are upper bounds</li>
+ *     <li>{@code dwell}: histogram of time spent in a container, bins are upper bounds in minutes</li>
+ * </ul>
+ */
+final class WorkloadAnalysis {
+
+	/**
+	 * Upper bounds of occupancy bins, the last bin contains everything larger.
+	 */
+	private static final int[] OCCUPANCY_BINS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+	/**
+	 * Upper bounds of dwell time bins in minutes.
+	 */
+	private static final int[] DWELL_BINS = {15, 30, 60, 120, 240, 480, 960, 1440};
+
+	private final EpisimConfigGroup episimConfig;
+	private final Map<String, Stats> stats = new LinkedHashMap<>();
+
+	/**
+	 * Number of contacts drawn by the infection model, see {@link org.matsim.episim.model.DefaultInfectionModel}.
+	 */
+	private final int contactWith;
+
+	WorkloadAnalysis(EpisimConfigGroup episimConfig) {
+		this.episimConfig = episimConfig;
+		this.contactWith = Math.max((int) (episimConfig.getSampleSize() * 10), 3);
+	}
+
+	private Stats getStats(EpisimContainer<?> container, String actType) {
+		String name = container instanceof InfectionEventHandler.EpisimVehicle ? "pt"
+				: episimConfig.selectInfectionParams(actType).getContainerName();
+
+		return stats.computeIfAbsent(name, k -> new Stats());
+	}
+
+	/**
+	 * Called after a person entered a container.
+	 */
+	void enter(EpisimContainer<?> container, String actType) {
+		Stats s = getStats(container, actType);
+		s.containers.add(container);
+		s.peakOccupancy = Math.max(s.peakOccupancy, container.getPersons().size());
+	}
+
+	/**
+	 * Called before a person leaves a container.
+	 *
+	 * @param timeSpent time the person spent in the container
+	 */
+	void leave(EpisimContainer<?> container, String actType, double timeSpent) {
+		leave(container, actType, timeSpent, container.getPersons().size());
+	}
+
+	/**
+	 * Called at the end of the day for a container. All persons still in it leave one after another, without being removed.
+	 *
+	 * @param now end of the day
+	 */
+	void leaveAll(EpisimContainer<?> container, double now) {
+		List<EpisimPerson> persons = container.getPersons();
+
+		for (int i = 0; i < persons.size(); i++) {
+			EpisimPerson person = persons.get(i);
+			String actType = container instanceof InfectionEventHandler.EpisimVehicle ? "pt"
+					: person.getTrajectory().get(person.getTrajectory().size() - 1);
+
+			// stationary agents are inserted at time 0, stays are counted for one day at most
+			double timeSpent = Math.min(now - container.getContainerEnteringTime(person.getPersonId()), 24 * 3600);
+			leave(container, actType, timeSpent, persons.size() - i);
+		}
+	}
+
+	/**
+	 * Counts a person leaving a container, which contains {@code size} persons including this one.
+	 */
+	private void leave(EpisimContainer<?> container, String actType, double timeSpent, int size) {
+		Stats s = getStats(container, actType);
+
+		// persons that were in the container at the start of the day have not entered it
+		s.containers.add(container);
+		s.peakOccupancy = Math.max(s.peakOccupancy, size);
+		s.visits++;
+
+		// every pair is counted once, when the first of both persons leaves
+		s.pairs += size - 1;
+		s.cost += size > 1 ? size + Math.min(size - 1, contactWith) : 0;
+
+		s.occupancy[bin(OCCUPANCY_BINS, size)]++;
+		s.dwell[bin(DWELL_BINS, (int) Math.ceil(timeSpent / 60))]++;
+	}
+
+	private static int bin(int[] bins, int value) {
+		int idx = Arrays.binarySearch(bins, value);
+		return idx >= 0 ? idx : -idx - 1;
+	}
+
+	/**
+	 * Writes all statistics to a file.
+	 */
+	void write(String filename) {
+
+		EpisimWriter writer = new EpisimWriter();
+		BufferedWriter out = EpisimWriter.prepare(filename, "class", "metric", "bin", "value");
+
+		for (Map.Entry<String, Stats> e : stats.entrySet()) {
+			String name = e.getKey();
+			Stats s = e.getValue();
+
+			writer.append(out, new String[]{name, "containers", "", String.valueOf(s.containers.size())});
+			writer.append(out, new String[]{name, "visits", "", String.valueOf(s.visits)});
+			writer.append(out, new String[]{name, "peakOccupancy", "", String.valueOf(s.peakOccupancy)});
+			writer.append(out, new String[]{name, "pairs", "", String.valueOf(s.pairs)});
+			writer.append(out, new String[]{name, "cost", "", String.valueOf(s.cost)});
+
+			for (int i = 0; i < s.occupancy.length; i++) {
+				if (s.occupancy[i] > 0)
+					writer.append(out, new String[]{name, "occupancy", label(OCCUPANCY_BINS, i), String.valueOf(s.occupancy[i])});
+			}
+
+			for (int i = 0; i < s.dwell.length; i++) {
+				if (s.dwell[i] > 0)
+					writer.append(out, new String[]{name, "dwell", label(DWELL_BINS, i), String.valueOf(s.dwell[i])});
+			}
+		}
+
+		writer.close(out);
+	}
+
+	private static String label(int[] bins, int i) {
+		return i < bins.length ? String.valueOf(bins[i]) : "max";
+	}
+
+	/**
+	 * Statistics of one container class.
+	 */
+	private static final class Stats {
+
+		private final Set<EpisimContainer<?>> containers = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final long[] occupancy = new long[OCCUPANCY_BINS.length + 1];
+		private final long[] dwell = new long[DWELL_BINS.length + 1];
+		private long visits;
+		private int peakOccupancy;
+		private long pairs;
+		private long cost;
+
+	}
+}
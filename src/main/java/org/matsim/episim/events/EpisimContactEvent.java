@@ -59,6 +59,20 @@ public final class EpisimContactEvent extends Event implements HasPersonId {
 		return contactPersonId;
 	}
 
+	/**
+	 * Container where the contact happened.
+	 */
+	public Id<?> getContainerId() {
+		return containerId;
+	}
+
+	/**
+	 * Activity type of the person.
+	 */
+	public String getActType() {
+		return actType;
+	}
+
 	/**
 	 * Length of the contact in seconds.
 	 */
@@ -0,0 +1,40 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Update of the restrictions by the policy at the beginning of a day.
+ */
+@Name("org.matsim.episim.PolicyUpdate")
+@Label("Policy Update")
+@Category("Episim")
+@StackTrace(false)
+public final class PolicyUpdateEvent extends Event {
+
+	@Label("Day")
+	public int day;
+
+	@Label("Policy")
+	public Class<?> policy;
+
+}
@@ -0,0 +1,43 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded after a producer had to wait for the async writer, because its buffer was full.
+ */
+@Name("org.matsim.episim.WriterStall")
+@Label("Writer Stall")
+@Category("Episim")
+@Threshold("0 ms")
+public final class WriterStallEvent extends Event {
+
+	@Label("Wait Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long waitTime;
+
+	/**
+	 * Start of the stall in nanoseconds, transient fields are not recorded.
+	 */
+	public transient long start;
+
+}
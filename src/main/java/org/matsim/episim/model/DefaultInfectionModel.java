@@ -24,6 +24,7 @@ import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.episim.*;
+import org.matsim.episim.jfr.ContainerInfectionEvent;
 import org.matsim.episim.policy.Restriction;
 
 import java.util.ArrayList;
@@ -63,16 +64,24 @@ public final class DefaultInfectionModel extends AbstractInfectionModel {
 	 */
 	private final StringBuilder buffer = new StringBuilder();
 
+	private final PerformanceMonitor monitor;
+
 	@Inject
 	public DefaultInfectionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig,
-								 EpisimReporting reporting, FaceMaskModel maskModel) {
-		this(rnd, episimConfig, reporting, maskModel, tracingConfig.getPutTraceablePersonsInQuarantineAfterDay());
+								 EpisimReporting reporting, FaceMaskModel maskModel, PerformanceMonitor monitor) {
+		this(rnd, episimConfig, reporting, maskModel, tracingConfig.getPutTraceablePersonsInQuarantineAfterDay(), monitor);
 	}
 
 	public DefaultInfectionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, EpisimReporting reporting, FaceMaskModel maskModel, int trackingAfterDay) {
+		this(rnd, episimConfig, reporting, maskModel, trackingAfterDay, PerformanceMonitor.DISABLED);
+	}
+
+	public DefaultInfectionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, EpisimReporting reporting, FaceMaskModel maskModel,
+								 int trackingAfterDay, PerformanceMonitor monitor) {
 		super(rnd, episimConfig, reporting);
 		this.maskModel = maskModel;
 		this.trackingAfterDay = trackingAfterDay;
+		this.monitor = monitor;
 	}
 
 	/**
@@ -94,12 +103,36 @@ public final class DefaultInfectionModel extends AbstractInfectionModel {
 
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
-		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
+		ContainerInfectionEvent event = new ContainerInfectionEvent();
+		event.begin();
+
+		int contacts = infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
+
+		commit(event, vehicle, "pt", contacts);
 	}
 
 	@Override
 	public void infectionDynamicsFacility(EpisimPerson personLeavingFacility, InfectionEventHandler.EpisimFacility facility, double now, String actType) {
-		infectionDynamicsGeneralized(personLeavingFacility, facility, now);
+		ContainerInfectionEvent event = new ContainerInfectionEvent();
+		event.begin();
+
+		int contacts = infectionDynamicsGeneralized(personLeavingFacility, facility, now);
+
+		commit(event, facility, actType, contacts);
+	}
+
+	/**
+	 * Commit flight recorder event, if it is enabled and took longer than the threshold.
+	 */
+	private static void commit(ContainerInfectionEvent event, EpisimContainer<?> container, String actType, int contacts) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.container = container.getContainerId().toString();
+			event.activityType = actType;
+			event.size = container.getPersons().size();
+			event.contacts = contacts;
+			event.commit();
+		}
 	}
 
 	@Override
@@ -108,15 +141,20 @@ public final class DefaultInfectionModel extends AbstractInfectionModel {
 		maskModel.setIteration(iteration);
 	}
 
-	private void infectionDynamicsGeneralized(EpisimPerson personLeavingContainer, EpisimContainer<?> container, double now) {
+	/**
+	 * Evaluate the contacts of a person leaving a container.
+	 *
+	 * @return number of drawn contacts
+	 */
+	private int infectionDynamicsGeneralized(EpisimPerson personLeavingContainer, EpisimContainer<?> container, double now) {
 
 		// no infection possible if there is only one person
 		if (iteration == 0 || container.getPersons().size() == 1) {
-			return;
+			return 0;
 		}
 
 		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, episimConfig, getRestrictions(), rnd)) {
-			return;
+			return 0;
 		}
 
 		// start tracking late as possible because of computational costs
@@ -132,6 +170,8 @@ public final class DefaultInfectionModel extends AbstractInfectionModel {
 
 		// persons are scaled to number of agents with sample size, but at least 3 for the small development scenarios
 		int contactWith = Math.min(otherPersonsInContainer.size(), Math.max((int) (episimConfig.getSampleSize() * 10), 3));
+		monitor.count(PerformanceMonitor.Counter.contacts, contactWith);
+		monitor.count(PerformanceMonitor.Counter.rngDraws, contactWith);
 		for (int ii = 0; ii < contactWith; ii++) {
 
 			// we are essentially looking at the situation when the person leaves the container.  Interactions with other persons who have
@@ -220,20 +260,28 @@ public final class DefaultInfectionModel extends AbstractInfectionModel {
 				// TODO: should be invoked earlier if performance penalty is not too high
 				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer, prob);
 
-				if (rnd.nextDouble() < prob)
+				monitor.count(PerformanceMonitor.Counter.rngDraws);
+				if (rnd.nextDouble() < prob) {
 					infectPerson(personLeavingContainer, contactPerson, now, infectionType);
+					monitor.count(PerformanceMonitor.Counter.infections);
+				}
 
 			} else {
 				double prob = calcInfectionProbability(contactPerson, personLeavingContainer, contactParams, leavingParams, jointTimeInContainer);
 				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer, prob);
 
-				if (rnd.nextDouble() < prob)
+				monitor.count(PerformanceMonitor.Counter.rngDraws);
+				if (rnd.nextDouble() < prob) {
 					infectPerson(contactPerson, personLeavingContainer, now, infectionType);
+					monitor.count(PerformanceMonitor.Counter.infections);
+				}
 			}
 		}
 
 		// Clear cached container
 		otherPersonsInContainer.clear();
+
+		return contactWith;
 	}
 
 	/**
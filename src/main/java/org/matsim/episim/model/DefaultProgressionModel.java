@@ -36,12 +36,15 @@ public class DefaultProgressionModel implements ProgressionModel {
 	private final SplittableRandom rnd;
 	private final EpisimConfigGroup episimConfig;
 	private final TracingConfigGroup tracingConfig;
+	private final HouseholdIndex households;
 
 	@Inject
-	public DefaultProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig) {
+	public DefaultProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig,
+								   HouseholdIndex households) {
 		this.rnd = rnd;
 		this.episimConfig = episimConfig;
 		this.tracingConfig = tracingConfig;
+		this.households = households;
 	}
 
 	@Override
@@ -153,28 +156,31 @@ public class DefaultProgressionModel implements ProgressionModel {
 
 		if (day < tracingConfig.getPutTraceablePersonsInQuarantineAfterDay()) return;
 
-		String homeId = null;
+		int household = -1;
 
 		// quarantine household flag controls direct household and 2nd order household
 		if (tracingConfig.getQuarantineHousehold())
-			homeId = (String) person.getAttributes().getAttribute("homeId");
-
-		// TODO: tracing household members makes always sense, no app or anything needed..
-		// they might not appear as contact persons under certain circumstances
+			household = person.getHousehold();
 
 		for (EpisimPerson pw : person.getTraceableContactPersons(now - tracingConfig.getTracingDayDistance() * DAY)) {
 
 			// don't draw random number when tracing is practically off
-			if (tracingConfig.getTracingProbability() == 0 && homeId == null)
+			if (tracingConfig.getTracingProbability() == 0 && household < 0)
 				continue;
 
 			// Persons of the same household are always traced successfully
-			if ((homeId != null && homeId.equals(pw.getAttributes().getAttribute("homeId")))
+			if ((household >= 0 && household == pw.getHousehold())
 					|| rnd.nextDouble() < tracingConfig.getTracingProbability())
 
 				quarantinePerson(pw, day);
 
 		}
+
+		// household members are traced as well, even if they did not appear as contact persons
+		if (household >= 0)
+			households.forEachMember(household, pw -> {
+				if (pw != person) quarantinePerson(pw, day);
+			});
 	}
 
 	private void quarantinePerson(EpisimPerson p, int day) {
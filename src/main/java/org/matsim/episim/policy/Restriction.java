@@ -74,6 +74,15 @@ public final class Restriction {
 		);
 	}
 
+	/**
+	 * Takes over all values of another restriction.
+	 */
+	public void update(Restriction r) {
+		this.remainingFraction = r.remainingFraction;
+		this.exposure = r.exposure;
+		this.requireMask = r.requireMask;
+	}
+
 	/**
 	 * This method is also used to write the restriction to csv.
 	 */
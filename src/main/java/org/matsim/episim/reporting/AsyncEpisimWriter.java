@@ -1,8 +1,10 @@
 package org.matsim.episim.reporting;
 
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.EventTranslatorThreeArg;
 import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.SleepingWaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
@@ -10,10 +12,17 @@ import com.lmax.disruptor.util.DaemonThreadFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.episim.jfr.WriterStallEvent;
 
+import javax.annotation.Nullable;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Overwrites the default episim writer to do all IO in an extra thread using the {@link Disruptor} library.
@@ -25,6 +34,18 @@ public final class AsyncEpisimWriter extends EpisimWriter implements EventHandle
 	private final Disruptor<LogEvent> disruptor;
 	private final StringEventTranslator translator = new StringEventTranslator();
 	private final StringArrayEventTranslator arrayTranslator = new StringArrayEventTranslator();
+	private final FlushEventTranslator flushTranslator = new FlushEventTranslator();
+
+	/**
+	 * Writers that received content since the last flush. Only accessed by the consumer thread.
+	 * Writers of simulation events are not included, they are only flushed when requested.
+	 */
+	private final Set<Writer> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+	/**
+	 * Time producers spent waiting for free space in the ring buffer.
+	 */
+	private final LongAdder stallTime = new LongAdder();
+
 	/**
 	 * Constructor.
 	 *
@@ -49,22 +70,80 @@ public final class AsyncEpisimWriter extends EpisimWriter implements EventHandle
 
 	@Override
 	public void append(BufferedWriter writer, String[] array) {
+		WriterStallEvent stall = stallStart();
 		disruptor.publishEvent(arrayTranslator, writer, array);
+		stallEnd(stall);
 	}
 
 	@Override
 	public void append(BufferedWriter writer, String content) {
+		WriterStallEvent stall = stallStart();
 		disruptor.publishEvent(translator, writer, content, false);
+		stallEnd(stall);
 	}
 
 	@Override
 	public void append(BufferedWriter writer, Event event) {
+		WriterStallEvent stall = stallStart();
 		disruptor.publishEvent(this, writer, event);
+		stallEnd(stall);
+	}
+
+	@Override
+	public void flush(BufferedWriter writer) {
+		WriterStallEvent stall = stallStart();
+		disruptor.publishEvent(flushTranslator, writer);
+		stallEnd(stall);
 	}
 
 	@Override
 	public void close(BufferedWriter writer) {
+		WriterStallEvent stall = stallStart();
 		disruptor.publishEvent(translator, writer, null, true);
+		stallEnd(stall);
+	}
+
+	@Override
+	public void sync() {
+		RingBuffer<LogEvent> ringBuffer = disruptor.getRingBuffer();
+		long cursor = ringBuffer.getCursor();
+
+		// the consumer sequence is advanced after the events have been handled
+		while (ringBuffer.getMinimumGatingSequence() < cursor)
+			LockSupport.parkNanos(100_000);
+	}
+
+	@Override
+	public long getStallTime() {
+		return stallTime.sum();
+	}
+
+	/**
+	 * Started stall event, or null if there is enough capacity to publish without waiting.
+	 */
+	@Nullable
+	private WriterStallEvent stallStart() {
+		if (disruptor.getRingBuffer().hasAvailableCapacity(1))
+			return null;
+
+		WriterStallEvent event = new WriterStallEvent();
+		event.begin();
+		event.start = System.nanoTime();
+		return event;
+	}
+
+	private void stallEnd(@Nullable WriterStallEvent event) {
+		if (event == null) return;
+
+		event.end();
+
+		long time = System.nanoTime() - event.start;
+		stallTime.add(time);
+
+		if (event.shouldCommit()) {
+			event.waitTime = time;
+			event.commit();
+		}
 	}
 
 	@Override
@@ -72,19 +151,31 @@ public final class AsyncEpisimWriter extends EpisimWriter implements EventHandle
 
 		if (event.close) {
 			event.writer.close();
+			dirty.remove(event.writer);
+		} else if (event.flush) {
+			event.writer.flush();
+			dirty.remove(event.writer);
 		} else {
 			event.writer.append(event.content);
-			if (event.flush)
-				event.writer.flush();
+			if (!event.simEvent)
+				dirty.add(event.writer);
 		}
 
 		event.reset();
+
+		// flush reports only when the consumer caught up with the producers
+		if (endOfBatch) {
+			for (Writer writer : dirty)
+				writer.flush();
+
+			dirty.clear();
+		}
 	}
 
 	@Override
 	public void translateTo(LogEvent event, long sequence, Writer arg0, Event arg1) {
 		event.writer = arg0;
-		event.flush = false;
+		event.simEvent = true;
 		try {
 			EpisimWriter.writeEvent(event.content, arg1);
 		} catch (IOException e) {
@@ -100,11 +191,16 @@ public final class AsyncEpisimWriter extends EpisimWriter implements EventHandle
 		private final StringBuilder content = new StringBuilder(BUFFER_SIZE);
 		private Writer writer;
 		private boolean close = false;
-		private boolean flush = true;
+		private boolean flush = false;
+		/**
+		 * Whether the content is a simulation event.
+		 */
+		private boolean simEvent = false;
 
 		private void reset() {
 			close = false;
-			flush = true;
+			flush = false;
+			simEvent = false;
 			if (content.capacity() > BUFFER_SIZE) {
 				content.setLength(BUFFER_SIZE);
 				content.trimToSize();
@@ -127,11 +223,22 @@ public final class AsyncEpisimWriter extends EpisimWriter implements EventHandle
 				event.close = true;
 			} else {
 				event.content.append(arg1);
-				event.flush = false;
 			}
 		}
 	}
 
+	/**
+	 * Request to flush a writer.
+	 */
+	public static final class FlushEventTranslator implements EventTranslatorOneArg<LogEvent, Writer> {
+
+		@Override
+		public void translateTo(LogEvent event, long sequence, Writer arg0) {
+			event.writer = arg0;
+			event.flush = true;
+		}
+	}
+
 	/**
 	 * Convert MATSim event to log event.
 	 */
@@ -0,0 +1,276 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.episim.EpisimContainer;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.facilities.ActivityFacility;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.matsim.episim.reporting.BinaryEventWriter.*;
+
+/**
+ * Reads event logs written by {@link BinaryEventWriter} and creates the same events that were written.
+ * <p>
+ * Layout of the file, all numbers in big endian:
+ * <pre>
+ * header:  int magic, int version, int day
+ * blocks:  int n, int timesLength, int payloadLength, byte[n] types, times, payload
+ * strings: int count, count * modified utf-8 strings
+ * index:   int count, count * (long offset, long firstTime as double bits, int n)
+ * trailer: long strings offset, long index offset, int magic
+ * </pre>
+ * Times are var-longs, either the zig-zag encoded delta to the previous whole second shifted by one,
+ * or {@code 1} followed by a plain double. Strings in the payload are var-int ids into the string table, with 0 as null.
+ */
+public final class BinaryEventReader implements Closeable {
+
+	private static final int TRAILER = 20;
+	private static final EpisimPerson.DiseaseStatus[] STATUS_VALUES = EpisimPerson.DiseaseStatus.values();
+
+	private final FileChannel channel;
+	private final int day;
+	private final String[] strings;
+	private final long[] blockOffsets;
+	private final double[] blockTimes;
+
+	/**
+	 * Opens a file and reads header, string table and index.
+	 */
+	public BinaryEventReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		ByteBuffer header = read(0, 12);
+		if (header.getInt() != MAGIC) throw new IOException("Not an episim event file: " + file);
+		int version = header.getInt();
+		if (version != VERSION) throw new IOException("Unsupported version " + version + " of " + file);
+		day = header.getInt();
+
+		long size = channel.size();
+		ByteBuffer trailer = read(size - TRAILER, TRAILER);
+		long stringOffset = trailer.getLong();
+		long indexOffset = trailer.getLong();
+		if (trailer.getInt() != MAGIC) throw new IOException("File is incomplete: " + file);
+
+		DataInputStream table = new DataInputStream(new ByteArrayInputStream(read(stringOffset, (int) (indexOffset - stringOffset)).array()));
+		strings = new String[table.readInt() + 1];
+		for (int i = 1; i < strings.length; i++)
+			strings[i] = table.readUTF();
+
+		ByteBuffer index = read(indexOffset, (int) (size - TRAILER - indexOffset));
+		int blocks = index.getInt();
+		blockOffsets = new long[blocks];
+		blockTimes = new double[blocks];
+		for (int i = 0; i < blocks; i++) {
+			blockOffsets[i] = index.getLong();
+			blockTimes[i] = Double.longBitsToDouble(index.getLong());
+			index.getInt();
+		}
+	}
+
+	/**
+	 * Read all events of a file.
+	 */
+	public static void readEvents(Path file, Consumer<? super Event> consumer) throws IOException {
+		try (BinaryEventReader reader = new BinaryEventReader(file)) {
+			reader.readEvents(consumer);
+		}
+	}
+
+	/**
+	 * Iteration of the events in this file.
+	 */
+	public int getDay() {
+		return day;
+	}
+
+	/**
+	 * Passes all events to the consumer.
+	 */
+	public void readEvents(Consumer<? super Event> consumer) throws IOException {
+		readEvents(Double.NEGATIVE_INFINITY, consumer);
+	}
+
+	/**
+	 * Passes all events with time greater or equal to {@code fromTime} to the consumer.
+	 * Blocks ending before this time are skipped using the index.
+	 */
+	public void readEvents(double fromTime, Consumer<? super Event> consumer) throws IOException {
+		for (int i = 0; i < blockOffsets.length; i++) {
+			if (i + 1 < blockOffsets.length && blockTimes[i + 1] < fromTime)
+				continue;
+
+			readBlock(blockOffsets[i], fromTime, consumer);
+		}
+	}
+
+	private void readBlock(long offset, double fromTime, Consumer<? super Event> consumer) throws IOException {
+
+		ByteBuffer header = read(offset, 12);
+		int n = header.getInt();
+		int timesLength = header.getInt();
+		int payloadLength = header.getInt();
+
+		ByteBuffer block = read(offset + 12, n + timesLength + payloadLength);
+		ByteBuffer types = block.duplicate().limit(n);
+		ByteBuffer times = block.duplicate().position(n).limit(n + timesLength);
+		ByteBuffer payload = block.duplicate().position(n + timesLength);
+
+		long lastTime = 0;
+		for (int i = 0; i < n; i++) {
+
+			double time;
+			long t = readVarLong(times);
+			if (t == 1) {
+				time = times.getDouble();
+			} else {
+				lastTime += unZigZag(t >>> 1);
+				time = lastTime;
+			}
+
+			Event event = readEvent(types.get(), time, payload);
+			if (time >= fromTime)
+				consumer.accept(event);
+		}
+	}
+
+	private Event readEvent(byte type, double time, ByteBuffer in) throws IOException {
+		switch (type) {
+			case CONTACT:
+				return new EpisimContactEvent(time, Id.createPersonId(readString(in)), Id.createPersonId(readString(in)),
+						Id.create(readString(in), EpisimContainer.class), readString(in), in.getDouble(), in.getDouble());
+			case INFECTION:
+				return new EpisimInfectionEvent(time, Id.createPersonId(readString(in)), Id.createPersonId(readString(in)),
+						Id.create(readString(in), EpisimContainer.class), readString(in));
+			case STATUS:
+				return new EpisimPersonStatusEvent(time, Id.createPersonId(readString(in)), STATUS_VALUES[in.get()]);
+			case ACT_START: {
+				Id<org.matsim.api.core.v01.population.Person> person = Id.createPersonId(readString(in));
+				String link = readString(in);
+				String facility = readString(in);
+				String actType = readString(in);
+				Coord coord = in.get() != 0 ? new Coord(in.getDouble(), in.getDouble()) : null;
+				return new ActivityStartEvent(time, person, Id.createLinkId(link),
+						facility != null ? Id.create(facility, ActivityFacility.class) : null, actType, coord);
+			}
+			case ACT_END: {
+				Id<org.matsim.api.core.v01.population.Person> person = Id.createPersonId(readString(in));
+				String link = readString(in);
+				String facility = readString(in);
+				return new ActivityEndEvent(time, person, Id.createLinkId(link),
+						facility != null ? Id.create(facility, ActivityFacility.class) : null, readString(in));
+			}
+			case ENTERS_VEHICLE:
+				return new PersonEntersVehicleEvent(time, Id.createPersonId(readString(in)), Id.createVehicleId(readString(in)));
+			case LEAVES_VEHICLE:
+				return new PersonLeavesVehicleEvent(time, Id.createPersonId(readString(in)), Id.createVehicleId(readString(in)));
+			case GENERIC: {
+				String eventType = readString(in);
+				int n = (int) readVarLong(in);
+				Map<String, String> attr = new LinkedHashMap<>();
+				for (int i = 0; i < n; i++)
+					attr.put(readString(in), readString(in));
+
+				return new StoredEvent(time, eventType, attr);
+			}
+			default:
+				throw new IOException("Unknown event type " + type);
+		}
+	}
+
+	private String readString(ByteBuffer in) {
+		return strings[(int) readVarLong(in)];
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+		}
+
+		return buffer.flip();
+	}
+
+	private static long readVarLong(ByteBuffer in) {
+		long v = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return v;
+	}
+
+	private static long unZigZag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Event of any other type, only holding the attributes that were written.
+	 */
+	private static final class StoredEvent extends Event {
+
+		private final String eventType;
+		private final Map<String, String> attributes;
+
+		private StoredEvent(double time, String eventType, Map<String, String> attributes) {
+			super(time);
+			this.eventType = eventType;
+			this.attributes = attributes;
+		}
+
+		@Override
+		public String getEventType() {
+			return eventType;
+		}
+
+		@Override
+		public Map<String, String> getAttributes() {
+			Map<String, String> attr = super.getAttributes();
+			attr.putAll(attributes);
+			return attr;
+		}
+	}
+
+}
@@ -0,0 +1,307 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes events into a compact binary log, which can be read again with {@link BinaryEventReader}.
+ * <p>
+ * Events are grouped into blocks, each block stores the event types and the delta encoded times in separate columns,
+ * followed by the typed records. All ids and strings are interned and only written once into a string table at the end of the file,
+ * together with an index of all blocks. See {@link BinaryEventReader} for the exact layout.
+ */
+public final class BinaryEventWriter implements Closeable {
+
+	static final int MAGIC = 0x45505645;
+	static final int VERSION = 1;
+
+	static final byte GENERIC = 0;
+	static final byte CONTACT = 1;
+	static final byte INFECTION = 2;
+	static final byte STATUS = 3;
+	static final byte ACT_START = 4;
+	static final byte ACT_END = 5;
+	static final byte ENTERS_VEHICLE = 6;
+	static final byte LEAVES_VEHICLE = 7;
+
+	/**
+	 * Number of events in one block.
+	 */
+	static final int BLOCK_SIZE = 8192;
+
+	/**
+	 * Largest time that can be stored as whole number.
+	 */
+	private static final double MAX_EXACT = 1L << 52;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Interned strings, the id 0 is reserved for null.
+	 */
+	private final MutableObjectIntMap<String> strings = new ObjectIntHashMap<>();
+	private final List<String> stringTable = new ArrayList<>();
+
+	private final ByteArrayOutputStream types = new ByteArrayOutputStream(BLOCK_SIZE);
+	private final ByteArrayOutputStream times = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+	private final ByteArrayOutputStream payload = new ByteArrayOutputStream(BLOCK_SIZE * 16);
+	private final DataOutputStream record = new DataOutputStream(payload);
+
+	/**
+	 * Offset, first time and number of events of each written block.
+	 */
+	private final List<long[]> index = new ArrayList<>();
+
+	/**
+	 * Number of bytes written to the file.
+	 */
+	private long offset;
+
+	/**
+	 * Number of events in the current block.
+	 */
+	private int n = 0;
+	private double firstTime;
+	private long lastTime;
+
+	/**
+	 * Creates a new file and writes the header.
+	 *
+	 * @param day iteration the events belong to
+	 */
+	public BinaryEventWriter(Path file, int day) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 65536));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(day);
+		offset = 12;
+	}
+
+	/**
+	 * Append an event to the log.
+	 */
+	public void write(Event event) throws IOException {
+
+		if (n == 0)
+			firstTime = event.getTime();
+
+		writeTime(event.getTime());
+
+		if (event instanceof EpisimContactEvent) {
+			EpisimContactEvent e = (EpisimContactEvent) event;
+			types.write(CONTACT);
+			writeString(e.getPersonId().toString());
+			writeString(e.getContactPersonId().toString());
+			writeString(e.getContainerId().toString());
+			writeString(e.getActType());
+			record.writeDouble(e.getDuration());
+			record.writeDouble(e.getInfectionProb());
+
+		} else if (event instanceof EpisimInfectionEvent) {
+			EpisimInfectionEvent e = (EpisimInfectionEvent) event;
+			types.write(INFECTION);
+			writeString(e.getPersonId().toString());
+			writeString(e.getInfectorId().toString());
+			writeString(e.getContainerId().toString());
+			writeString(e.getInfectionType());
+
+		} else if (event instanceof EpisimPersonStatusEvent) {
+			EpisimPersonStatusEvent e = (EpisimPersonStatusEvent) event;
+			types.write(STATUS);
+			writeString(e.getPersonId().toString());
+			record.writeByte(e.getDiseaseStatus().ordinal());
+
+		} else if (event instanceof ActivityStartEvent) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			types.write(ACT_START);
+			writeString(e.getPersonId().toString());
+			writeString(e.getLinkId().toString());
+			writeString(e.getFacilityId() != null ? e.getFacilityId().toString() : null);
+			writeString(e.getActType());
+			Coord coord = e.getCoord();
+			record.writeBoolean(coord != null);
+			if (coord != null) {
+				record.writeDouble(coord.getX());
+				record.writeDouble(coord.getY());
+			}
+
+		} else if (event instanceof ActivityEndEvent) {
+			ActivityEndEvent e = (ActivityEndEvent) event;
+			types.write(ACT_END);
+			writeString(e.getPersonId().toString());
+			writeString(e.getLinkId().toString());
+			writeString(e.getFacilityId() != null ? e.getFacilityId().toString() : null);
+			writeString(e.getActType());
+
+		} else if (event instanceof PersonEntersVehicleEvent) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+			types.write(ENTERS_VEHICLE);
+			writeString(e.getPersonId().toString());
+			writeString(e.getVehicleId().toString());
+
+		} else if (event instanceof PersonLeavesVehicleEvent) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+			types.write(LEAVES_VEHICLE);
+			writeString(e.getPersonId().toString());
+			writeString(e.getVehicleId().toString());
+
+		} else {
+			// all attributes except time are stored as strings
+			Map<String, String> attr = event.getAttributes();
+			types.write(GENERIC);
+			writeString(event.getEventType());
+			writeVarInt(record, attr.size() - 2);
+			for (Map.Entry<String, String> e : attr.entrySet()) {
+				if (e.getKey().equals(Event.ATTRIBUTE_TIME) || e.getKey().equals(Event.ATTRIBUTE_TYPE))
+					continue;
+
+				writeString(e.getKey());
+				writeString(e.getValue());
+			}
+		}
+
+		if (++n == BLOCK_SIZE)
+			flushBlock();
+	}
+
+	/**
+	 * Writes the remaining block, the string table and the index.
+	 */
+	@Override
+	public void close() throws IOException {
+		flushBlock();
+
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream tableOut = new DataOutputStream(table);
+		tableOut.writeInt(stringTable.size());
+		for (String s : stringTable)
+			tableOut.writeUTF(s);
+
+		long stringOffset = offset;
+		table.writeTo(out);
+
+		long indexOffset = stringOffset + table.size();
+		out.writeInt(index.size());
+		for (long[] block : index) {
+			out.writeLong(block[0]);
+			out.writeLong(block[1]);
+			out.writeInt((int) block[2]);
+		}
+
+		out.writeLong(stringOffset);
+		out.writeLong(indexOffset);
+		out.writeInt(MAGIC);
+		out.close();
+	}
+
+	/**
+	 * Write the columns of the current block.
+	 */
+	private void flushBlock() throws IOException {
+		if (n == 0) return;
+
+		index.add(new long[]{offset, Double.doubleToLongBits(firstTime), n});
+
+		out.writeInt(n);
+		out.writeInt(times.size());
+		out.writeInt(payload.size());
+		types.writeTo(out);
+		times.writeTo(out);
+		payload.writeTo(out);
+
+		offset += 12 + types.size() + times.size() + payload.size();
+
+		types.reset();
+		times.reset();
+		payload.reset();
+		lastTime = 0;
+		n = 0;
+	}
+
+	/**
+	 * Times are stored as delta to the previous event if they are whole seconds, as plain double otherwise.
+	 */
+	private void writeTime(double time) throws IOException {
+		if (time == Math.rint(time) && Math.abs(time) < MAX_EXACT) {
+			long t = (long) time;
+			writeVarLong(times, zigZag(t - lastTime) << 1);
+			lastTime = t;
+		} else {
+			writeVarLong(times, 1);
+			long bits = Double.doubleToLongBits(time);
+			for (int i = 56; i >= 0; i -= 8)
+				times.write((int) (bits >>> i));
+		}
+	}
+
+	/**
+	 * Writes the interned id of a string.
+	 */
+	private void writeString(String s) throws IOException {
+		if (s == null) {
+			record.writeByte(0);
+			return;
+		}
+
+		int id = strings.getIfAbsent(s, 0);
+		if (id == 0) {
+			stringTable.add(s);
+			id = stringTable.size();
+			strings.put(s, id);
+		}
+
+		writeVarInt(record, id);
+	}
+
+	static long zigZag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static void writeVarLong(OutputStream out, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+}
@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writer that encodes text as utf-8 into a direct buffer, which is written to a {@link FileChannel} only when it is full
+ * or the writer is flushed.
+ */
+final class ChannelWriter extends Writer {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private char pending;
+	private boolean hasPending = false;
+	private boolean closed = false;
+
+	/**
+	 * Creates or truncates the file.
+	 */
+	ChannelWriter(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		encode(CharBuffer.wrap(cbuf, off, len));
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		encode(CharBuffer.wrap(str, off, off + len));
+	}
+
+	private void encode(CharBuffer in) throws IOException {
+		if (closed) throw new IOException("Writer is closed");
+
+		// complete a surrogate pair that was split between two writes
+		if (hasPending) {
+			hasPending = false;
+			CharBuffer pair = CharBuffer.allocate(2);
+			pair.put(pending);
+			if (in.hasRemaining())
+				pair.put(in.get());
+
+			encodeChars(pair.flip());
+		}
+
+		encodeChars(in);
+	}
+
+	private void encodeChars(CharBuffer in) throws IOException {
+		while (true) {
+			CoderResult result = encoder.encode(in, buffer, false);
+			if (result.isOverflow())
+				drain();
+			else if (result.isUnderflow()) {
+				// only an unpaired high surrogate at the end can remain
+				if (in.hasRemaining()) {
+					pending = in.get();
+					hasPending = true;
+				}
+				return;
+			} else
+				result.throwException();
+		}
+	}
+
+	/**
+	 * Write the buffer content to the channel.
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+
+		buffer.clear();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (closed) return;
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+
+		drain();
+		encoder.encode(hasPending ? CharBuffer.wrap(new char[]{pending}) : CharBuffer.allocate(0), buffer, true);
+		encoder.flush(buffer);
+		drain();
+		channel.close();
+		closed = true;
+	}
+}
@@ -9,10 +9,12 @@ import org.matsim.core.utils.io.IOUtils;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
  * Utility class to write reported data into csv files.
+ * Rows are not flushed individually, the data is only guaranteed to be written after {@link #flush(BufferedWriter)} or {@link #close(BufferedWriter)}.
  */
 public class EpisimWriter {
 
@@ -25,11 +27,25 @@ public class EpisimWriter {
 	 */
 	public static final Joiner JOINER = Joiner.on(SEPARATOR);
 
+	/**
+	 * Creates a writer for a file. Uncompressed files are written through a {@link java.nio.channels.FileChannel}.
+	 */
+	static BufferedWriter createWriter(String filename) {
+		if (filename.endsWith(".gz"))
+			return IOUtils.getBufferedWriter(filename);
+
+		try {
+			return new BufferedWriter(new ChannelWriter(Path.of(filename)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	/**
 	 * Creates a csv writer and write the header using enum definition.
 	 */
 	public static BufferedWriter prepare(String filename, Class<? extends Enum<?>> enumClass) {
-		BufferedWriter writer = IOUtils.getBufferedWriter(filename);
+		BufferedWriter writer = createWriter(filename);
 		try {
 			writer.write(JOINER.join(enumClass.getEnumConstants()));
 			writer.write("\n");
@@ -44,7 +60,7 @@ public class EpisimWriter {
 	 * Creates a csv writer and writes the header according to {@link Joiner#join(Object, Object, Object...)}.
 	 */
 	public static BufferedWriter prepare(String filename, Object first, Object second, Object... rest) {
-		BufferedWriter writer = IOUtils.getBufferedWriter(filename);
+		BufferedWriter writer = createWriter(filename);
 		try {
 			writer.write(JOINER.join(first, second, rest));
 			writer.write("\n");
@@ -59,6 +75,16 @@ public class EpisimWriter {
 	 * Writes an event as xml representation to {@code out}.
 	 */
 	public static void writeEvent(final Appendable out, final Event event) throws IOException {
+
+		// frequent types are written without creating the attributes
+		if (!EventSerializer.write(out, event))
+			writeAttributes(out, event);
+	}
+
+	/**
+	 * Writes an event using its {@link Event#getAttributes()}.
+	 */
+	static void writeAttributes(final Appendable out, final Event event) throws IOException {
 		out.append("\t<event ");
 		Map<String, String> attr = event.getAttributes();
 		for (Map.Entry<String, String> entry : attr.entrySet()) {
@@ -76,7 +102,7 @@ public class EpisimWriter {
 	 * Same logic as in {@link org.matsim.core.events.algorithms.EventWriterXML}. But we need to ability to write directly
 	 * to he target {@code out} without creating an intermediate representation.
 	 */
-	private static void writeAttributeValue(final Appendable out, final String attributeValue) throws IOException {
+	static void writeAttributeValue(final Appendable out, final String attributeValue) throws IOException {
 		if (attributeValue == null) {
 			return;
 		}
@@ -126,7 +152,6 @@ public class EpisimWriter {
 		try {
 			writer.write(JOINER.join(array));
 			writer.write("\n");
-			writer.flush();
 		} catch (IOException e) {
 			log.error("Could not write content", e);
 		}
@@ -138,7 +163,6 @@ public class EpisimWriter {
 	public void append(BufferedWriter writer, String string) {
 		try {
 			writer.write(string);
-			writer.flush();
 		} catch (IOException e) {
 			log.error("Could not write content", e);
 		}
@@ -156,6 +180,17 @@ public class EpisimWriter {
 		}
 	}
 
+	/**
+	 * Write all appended content of a writer, e.g. at the end of a day.
+	 */
+	public void flush(BufferedWriter writer) {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			log.error("Could not flush writer", e);
+		}
+	}
+
 	/**
 	 * Close a writer for writing.
 	 */
@@ -167,4 +202,18 @@ public class EpisimWriter {
 			throw new UncheckedIOException(e);
 		}
 	}
+
+	/**
+	 * Blocks until all previous operations have been performed on the underlying writers.
+	 * Synchronous writers perform them immediately.
+	 */
+	public void sync() {
+	}
+
+	/**
+	 * Total time in nanoseconds callers had to wait, because the writer could not keep up. Always zero for synchronous writers.
+	 */
+	public long getStallTime() {
+		return 0;
+	}
 }
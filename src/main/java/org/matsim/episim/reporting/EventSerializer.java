@@ -0,0 +1,276 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes the xml representation of the most frequent event types directly from their fields,
+ * without creating the attribute map of {@link Event#getAttributes()}.
+ * <p>
+ * The order of attributes is taken once from {@link Event#getAttributes()} for each type and combination of optional fields.
+ * The first event of such a shape is also used to verify that all values are formatted the same way, otherwise the shape
+ * is always written with the generic attribute map. The output is therefore identical to {@link EpisimWriter#writeAttributes(Appendable, Event)}.
+ */
+final class EventSerializer {
+
+	private static final int TIME = 0;
+	private static final int TYPE = 1;
+	private static final int PERSON = 2;
+	private static final int LINK = 3;
+	private static final int FACILITY = 4;
+	private static final int ACT_TYPE = 5;
+	private static final int X = 6;
+	private static final int Y = 7;
+	private static final int VEHICLE = 8;
+	private static final int CONTACT_PERSON = 9;
+	private static final int DURATION = 10;
+	private static final int CONTAINER = 11;
+	private static final int INFECTION_PROB = 12;
+	private static final int INFECTOR = 13;
+	private static final int INFECTION_TYPE = 14;
+	private static final int DISEASE_STATUS = 15;
+
+	/**
+	 * Attribute names for each field.
+	 */
+	private static final String[] KEYS = {"time", "type", "person", "link", "facility", "actType", "x", "y", "vehicle",
+			"contactPerson", "duration", "container", "infectionProb", "infector", "infectionType", "diseaseStatus"};
+
+	/**
+	 * Doubles up to this value are written without exponent by {@link Double#toString(double)}.
+	 */
+	private static final double MAX_PLAIN = 1e7;
+
+	/**
+	 * Marker for shapes that can not be written by this class.
+	 */
+	private static final int[] GENERIC = new int[0];
+
+	/**
+	 * Field order for each shape, lazily initialized.
+	 */
+	private static final AtomicReferenceArray<int[]> SHAPES = new AtomicReferenceArray<>(7 * 4);
+
+	private EventSerializer() {
+	}
+
+	/**
+	 * Writes an event, if it is supported.
+	 *
+	 * @return false if the event needs to be written using its attributes.
+	 */
+	static boolean write(Appendable out, Event event) throws IOException {
+
+		int shape = shape(event);
+		if (shape < 0) return false;
+
+		int[] fields = SHAPES.get(shape);
+		if (fields == null) {
+			fields = createFields(event);
+			SHAPES.set(shape, fields);
+		}
+
+		if (fields == GENERIC) return false;
+
+		out.append("\t<event ");
+		for (int field : fields) {
+			out.append(KEYS[field]);
+			out.append("=\"");
+			writeField(out, event, field);
+			out.append("\" ");
+		}
+		out.append(" />\n");
+
+		return true;
+	}
+
+	/**
+	 * Index of the event type and its optional fields.
+	 */
+	private static int shape(Event event) {
+		if (event instanceof EpisimContactEvent)
+			return 0;
+		else if (event instanceof EpisimInfectionEvent)
+			return 4;
+		else if (event instanceof EpisimPersonStatusEvent)
+			return 8;
+		else if (event instanceof ActivityStartEvent) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			return 12 + (e.getFacilityId() != null ? 1 : 0) + (e.getCoord() != null ? 2 : 0);
+		} else if (event instanceof ActivityEndEvent)
+			return 16 + (((ActivityEndEvent) event).getFacilityId() != null ? 1 : 0);
+		else if (event instanceof PersonEntersVehicleEvent)
+			return 20;
+		else if (event instanceof PersonLeavesVehicleEvent)
+			return 24;
+
+		return -1;
+	}
+
+	/**
+	 * Determine the field order from the attributes and check that all values are formatted identically.
+	 */
+	private static int[] createFields(Event event) throws IOException {
+
+		Map<String, String> attr = event.getAttributes();
+		int[] fields = new int[attr.size()];
+
+		int i = 0;
+		for (Map.Entry<String, String> e : attr.entrySet()) {
+			int field = -1;
+			for (int j = 0; j < KEYS.length; j++) {
+				if (KEYS[j].equals(e.getKey())) {
+					field = j;
+					break;
+				}
+			}
+
+			if (field == -1) return GENERIC;
+
+			StringBuilder value = new StringBuilder();
+			try {
+				writeField(value, event, field);
+			} catch (ClassCastException | NullPointerException ex) {
+				return GENERIC;
+			}
+
+			StringBuilder expected = new StringBuilder();
+			EpisimWriter.writeAttributeValue(expected, e.getValue());
+			if (!expected.toString().equals(value.toString())) return GENERIC;
+
+			fields[i++] = field;
+		}
+
+		return fields;
+	}
+
+	private static void writeField(Appendable out, Event event, int field) throws IOException {
+		switch (field) {
+			case TIME:
+				writeDouble(out, event.getTime());
+				break;
+			case TYPE:
+				out.append(event.getEventType());
+				break;
+			case PERSON:
+				writeId(out, ((HasPersonId) event).getPersonId());
+				break;
+			case LINK:
+				writeId(out, event instanceof ActivityStartEvent ? ((ActivityStartEvent) event).getLinkId() : ((ActivityEndEvent) event).getLinkId());
+				break;
+			case FACILITY:
+				writeId(out, event instanceof ActivityStartEvent ? ((ActivityStartEvent) event).getFacilityId() : ((ActivityEndEvent) event).getFacilityId());
+				break;
+			case ACT_TYPE:
+				String actType;
+				if (event instanceof ActivityStartEvent) actType = ((ActivityStartEvent) event).getActType();
+				else if (event instanceof ActivityEndEvent) actType = ((ActivityEndEvent) event).getActType();
+				else actType = ((EpisimContactEvent) event).getActType();
+				EpisimWriter.writeAttributeValue(out, actType);
+				break;
+			case X:
+				writeDouble(out, ((ActivityStartEvent) event).getCoord().getX());
+				break;
+			case Y:
+				writeDouble(out, ((ActivityStartEvent) event).getCoord().getY());
+				break;
+			case VEHICLE:
+				writeId(out, event instanceof PersonEntersVehicleEvent ? ((PersonEntersVehicleEvent) event).getVehicleId() : ((PersonLeavesVehicleEvent) event).getVehicleId());
+				break;
+			case CONTACT_PERSON:
+				writeId(out, ((EpisimContactEvent) event).getContactPersonId());
+				break;
+			case DURATION:
+				writeDouble(out, ((EpisimContactEvent) event).getDuration());
+				break;
+			case CONTAINER:
+				writeId(out, event instanceof EpisimContactEvent ? ((EpisimContactEvent) event).getContainerId() : ((EpisimInfectionEvent) event).getContainerId());
+				break;
+			case INFECTION_PROB:
+				writeDouble(out, ((EpisimContactEvent) event).getInfectionProb());
+				break;
+			case INFECTOR:
+				writeId(out, ((EpisimInfectionEvent) event).getInfectorId());
+				break;
+			case INFECTION_TYPE:
+				EpisimWriter.writeAttributeValue(out, ((EpisimInfectionEvent) event).getInfectionType());
+				break;
+			case DISEASE_STATUS:
+				// enum names never need escaping
+				out.append(((EpisimPersonStatusEvent) event).getDiseaseStatus().name());
+				break;
+			default:
+				throw new IllegalStateException("Unknown field " + field);
+		}
+	}
+
+	private static void writeId(Appendable out, Id<?> id) throws IOException {
+		EpisimWriter.writeAttributeValue(out, id.toString());
+	}
+
+	/**
+	 * Writes a double the same way as {@link Double#toString(double)}, but without allocation for whole numbers.
+	 */
+	static void writeDouble(Appendable out, double value) throws IOException {
+
+		// negative zero, fractions, exponent notation and special values are handled by the jdk
+		if (value != Math.rint(value) || Math.abs(value) >= MAX_PLAIN || (value == 0 && 1 / value < 0)) {
+			out.append(Double.toString(value));
+			return;
+		}
+
+		writeLong(out, (long) value);
+		out.append(".0");
+	}
+
+	/**
+	 * Write the decimal digits of a number.
+	 */
+	static void writeLong(Appendable out, long value) throws IOException {
+
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+			return;
+		}
+
+		if (value < 0) {
+			out.append('-');
+			value = -value;
+		}
+
+		long div = 1;
+		while (div <= value / 10)
+			div *= 10;
+
+		for (; div > 0; div /= 10)
+			out.append((char) ('0' + (value / div) % 10));
+	}
+
+}
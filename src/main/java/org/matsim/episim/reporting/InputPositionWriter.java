@@ -0,0 +1,95 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes for each episim event the number of input events that were replayed before it.
+ * Positions are non-decreasing during one day and stored as var-int deltas.
+ *
+ * @see MergedEventReader
+ */
+public final class InputPositionWriter implements Closeable {
+
+	private final OutputStream out;
+	private long last = 0;
+
+	public InputPositionWriter(Path file) throws IOException {
+		out = new BufferedOutputStream(Files.newOutputStream(file));
+	}
+
+	/**
+	 * Write the position of the next episim event.
+	 */
+	public void write(long position) throws IOException {
+		if (position < last)
+			throw new IllegalArgumentException("Positions must not decrease: " + position + " < " + last);
+
+		long v = position - last;
+		last = position;
+
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Read all positions of a file.
+	 */
+	public static long[] read(Path file) throws IOException {
+		long[] result = new long[1024];
+		int n = 0;
+		long last = 0;
+
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+			int b;
+			while ((b = in.read()) != -1) {
+				long v = 0;
+				int shift = 0;
+				while ((b & 0x80) != 0) {
+					v |= (long) (b & 0x7F) << shift;
+					shift += 7;
+					b = in.read();
+					if (b == -1) throw new EOFException("Truncated position file " + file);
+				}
+				v |= (long) b << shift;
+
+				last += v;
+				if (n == result.length)
+					result = Arrays.copyOf(result, n * 2);
+				result[n++] = last;
+			}
+		}
+
+		return Arrays.copyOf(result, n);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,190 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.ReplayHandler;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reconstructs the full event stream of a day, as written with {@link EpisimConfigGroup.WriteEvents#all},
+ * from output written with {@link EpisimConfigGroup.WriteEvents#reference}.
+ * The input events are replayed with the same time shift as during the simulation and interleaved with the
+ * written episim events, according to their input position.
+ */
+public final class MergedEventReader {
+
+	/**
+	 * File name of the manifest within the events directory.
+	 */
+	public static final String MANIFEST = "manifest.tsv";
+
+	private static final Logger log = LogManager.getLogger(MergedEventReader.class);
+
+	private final Path directory;
+	private final Map<Integer, String[]> days = new HashMap<>();
+	private final Scenario scenario;
+	private ReplayHandler replay;
+	private String inputEventsFile;
+
+	/**
+	 * Reads the manifest.
+	 *
+	 * @param manifest path to the manifest file
+	 * @param scenario optional scenario, which is used to complete coordinates the same way as during the simulation
+	 */
+	public MergedEventReader(Path manifest, @Nullable Scenario scenario) throws IOException {
+		this.directory = manifest.toAbsolutePath().getParent();
+		this.scenario = scenario;
+
+		try (BufferedReader in = Files.newBufferedReader(manifest)) {
+			String line = in.readLine();
+			if (line == null || !line.startsWith(ManifestFields.day.name()))
+				throw new IOException("Not a valid manifest: " + manifest);
+
+			while ((line = in.readLine()) != null) {
+				if (line.isBlank()) continue;
+				String[] row = line.split("\t", -1);
+				days.put(Integer.parseInt(row[ManifestFields.day.ordinal()]), row);
+			}
+		}
+	}
+
+	/**
+	 * Days that are contained in the manifest.
+	 */
+	public List<Integer> getDays() {
+		List<Integer> result = new ArrayList<>(days.keySet());
+		result.sort(Integer::compareTo);
+		return result;
+	}
+
+	/**
+	 * Reads the full event stream of one day in the same order as it would have been written.
+	 */
+	public void readEvents(int day, Consumer<? super Event> consumer) throws IOException {
+
+		String[] row = days.get(day);
+		if (row == null)
+			throw new IllegalArgumentException("Day " + day + " is not part of the manifest.");
+
+		Path eventFile = directory.resolve(row[ManifestFields.events.ordinal()]);
+		long[] positions = InputPositionWriter.read(directory.resolve(row[ManifestFields.positions.ordinal()]));
+		List<Event> episimEvents = readEpisimEvents(eventFile);
+
+		if (positions.length != episimEvents.size())
+			throw new IOException(String.format("Number of positions (%d) does not match number of events (%d) in %s",
+					positions.length, episimEvents.size(), eventFile));
+
+		ReplayHandler replay = getReplay(row[ManifestFields.input.ordinal()]);
+
+		EventsManager manager = EventsUtils.createEventsManager();
+		MergeHandler handler = new MergeHandler(episimEvents, positions, consumer);
+		manager.addHandler(handler);
+
+		replay.replayEvents(manager, day);
+		handler.finish();
+	}
+
+	private ReplayHandler getReplay(String input) {
+
+		// input events are only read once, as long as they don't change
+		if (!input.equals(inputEventsFile)) {
+			log.info("Reading input events from {}", input);
+
+			EpisimConfigGroup config = new EpisimConfigGroup();
+			config.setInputEventsFile(input);
+			replay = new ReplayHandler(config, scenario);
+			inputEventsFile = input;
+		}
+
+		return replay;
+	}
+
+	private static List<Event> readEpisimEvents(Path file) throws IOException {
+		List<Event> events = new ArrayList<>();
+		if (file.getFileName().toString().endsWith(".bin")) {
+			BinaryEventReader.readEvents(file, events::add);
+		} else {
+			EventsManager manager = EventsUtils.createEventsManager();
+			manager.addHandler((BasicEventHandler) events::add);
+			EventsUtils.readEvents(manager, file.toString());
+		}
+		return events;
+	}
+
+	/**
+	 * Columns of the manifest.
+	 */
+	public enum ManifestFields {day, events, positions, input, offset}
+
+	/**
+	 * Emits episim events before the input event at their position.
+	 */
+	private static final class MergeHandler implements BasicEventHandler {
+
+		private final List<Event> events;
+		private final long[] positions;
+		private final Consumer<? super Event> consumer;
+		private int next = 0;
+		private long input = 0;
+
+		private MergeHandler(List<Event> events, long[] positions, Consumer<? super Event> consumer) {
+			this.events = events;
+			this.positions = positions;
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			while (next < positions.length && positions[next] <= input)
+				consumer.accept(events.get(next++));
+
+			consumer.accept(event);
+			input++;
+		}
+
+		/**
+		 * Emits the remaining episim events, which occurred after the last input event.
+		 */
+		private void finish() {
+			while (next < events.size())
+				consumer.accept(events.get(next++));
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.reporting;
+
+import com.lmax.disruptor.util.DaemonThreadFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses fixed size blocks in parallel. Each block is written as separate gzip member,
+ * which are concatenated in order (like pigz). Such files can be read by every gzip reader, including {@link java.util.zip.GZIPInputStream}.
+ * <p>
+ * The stream itself must only be used by one thread. {@link #flush()} does not end the current block,
+ * data is only guaranteed to be complete after {@link #close()}.
+ */
+public final class ParallelGzipOutputStream extends OutputStream {
+
+	static final int BLOCK_SIZE = 1 << 20;
+
+	/**
+	 * Shared pool for compression of all streams.
+	 */
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), DaemonThreadFactory.INSTANCE);
+
+	private final OutputStream out;
+
+	/**
+	 * Maximum number of blocks being compressed at the same time.
+	 */
+	private final int maxPending;
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+	private final BlockingQueue<byte[]> buffers = new LinkedBlockingQueue<>();
+
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int pos = 0;
+	private boolean submitted = false;
+	private boolean closed = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out        target stream, will be closed with this stream
+	 * @param maxPending number of blocks that are compressed concurrently
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int maxPending) {
+		if (maxPending < 1) throw new IllegalArgumentException("At least one block must be compressed at a time");
+
+		this.out = out;
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * Creates an utf-8 writer for a new gzip file.
+	 */
+	public static BufferedWriter createWriter(Path file, int maxPending) {
+		try {
+			return new BufferedWriter(new OutputStreamWriter(
+					new ParallelGzipOutputStream(Files.newOutputStream(file), maxPending), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		block[pos++] = (byte) b;
+		if (pos == BLOCK_SIZE)
+			submit();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = Math.min(len, BLOCK_SIZE - pos);
+			System.arraycopy(b, off, block, pos, n);
+			pos += n;
+			off += n;
+			len -= n;
+
+			if (pos == BLOCK_SIZE)
+				submit();
+		}
+	}
+
+	/**
+	 * Writes all blocks that are already compressed, but does not end the current block.
+	 */
+	@Override
+	public void flush() throws IOException {
+		while (!pending.isEmpty() && pending.peekFirst().isDone())
+			writeNext();
+
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		try {
+			// empty streams still need one gzip member to be valid
+			if (pos > 0 || !submitted)
+				submit();
+
+			while (!pending.isEmpty())
+				writeNext();
+
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Start compression of the current block and continue with a new one.
+	 */
+	private void submit() throws IOException {
+
+		byte[] data = block;
+		int length = pos;
+		pending.addLast(POOL.submit(() -> compress(data, length)));
+		submitted = true;
+
+		byte[] next = buffers.poll();
+		block = next != null ? next : new byte[BLOCK_SIZE];
+		pos = 0;
+
+		while (pending.size() > maxPending)
+			writeNext();
+	}
+
+	/**
+	 * Wait for the oldest block and write it.
+	 */
+	private void writeNext() throws IOException {
+		try {
+			out.write(pending.removeFirst().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for compression");
+		} catch (ExecutionException e) {
+			throw new IOException("Could not compress block", e.getCause());
+		}
+	}
+
+	/**
+	 * Compress one block as complete gzip member and release its buffer.
+	 */
+	private byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bos, 65536)) {
+			gzip.write(data, 0, length);
+		}
+
+		// at most the buffers of the pending blocks are kept
+		if (buffers.size() <= maxPending)
+			buffers.offer(data);
+
+		return bos.toByteArray();
+	}
+
+}
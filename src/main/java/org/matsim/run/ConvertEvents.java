@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.run;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.episim.reporting.BinaryEventReader;
+import org.matsim.episim.reporting.EpisimWriter;
+import picocli.CommandLine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts binary event logs into the xml event files, as they would have been written with the xml format.
+ */
+@CommandLine.Command(
+		name = "convertEvents",
+		description = "Convert binary episim event logs to xml.",
+		showDefaultValues = true,
+		mixinStandardHelpOptions = true
+)
+public class ConvertEvents implements Callable<Integer> {
+
+	private static final Logger log = LogManager.getLogger(ConvertEvents.class);
+
+	@CommandLine.Parameters(paramLabel = "input", arity = "1..*", description = "Binary event files or directories containing them")
+	private List<Path> input;
+
+	public static void main(String[] args) {
+		System.exit(new CommandLine(new ConvertEvents()).execute(args));
+	}
+
+	/**
+	 * Converts one binary file into an xml file.
+	 */
+	public static void convert(Path input, Path output) throws IOException {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(output.toString())) {
+			writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+			BinaryEventReader.readEvents(input, event -> {
+				try {
+					EpisimWriter.writeEvent(writer, event);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			writer.write("</events>");
+		}
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		for (Path path : input) {
+
+			List<Path> files;
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> list = Files.list(path)) {
+					files = list.filter(p -> p.getFileName().toString().endsWith(".bin")).sorted().collect(Collectors.toList());
+				}
+			} else
+				files = List.of(path);
+
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				Path output = file.resolveSibling(name.substring(0, name.length() - ".bin".length()) + ".xml.gz");
+
+				log.info("Converting {} to {}", file, output);
+				convert(file, output);
+			}
+		}
+
+		return 0;
+	}
+}
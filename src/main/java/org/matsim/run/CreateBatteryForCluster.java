@@ -32,6 +32,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.BatchRun;
 import org.matsim.episim.PreparedRun;
@@ -86,6 +87,9 @@ public class CreateBatteryForCluster<T> implements Callable<Integer> {
 	@CommandLine.Option(names = "--jvm-opts", description = "Additional options for JVM", defaultValue = "-Xms4600m -Xmx4600m")
 	private String jvmOpts;
 
+	@CommandLine.Option(names = "--samples", description = "Number of parameter combinations drawn by latin hypercube sampling. (0=all)", defaultValue = "0")
+	private int samples;
+
 	@CommandLine.Option(names = "--setup", defaultValue = "org.matsim.run.batch.MunichSchoolClosureAndMasks")
 	private Class<? extends BatchRun<T>> setup;
 
@@ -114,7 +118,7 @@ public class CreateBatteryForCluster<T> implements Callable<Integer> {
 		BufferedWriter infoWriter = new BufferedWriter(new FileWriter(dir.resolve("_info.txt").toFile()));
 		BufferedWriter yamlWriter = new BufferedWriter(new FileWriter(dir.resolve("metadata.yaml").toFile()));
 
-		PreparedRun prepare = BatchRun.prepare(setup, params);
+		PreparedRun prepare = BatchRun.prepare(setup, params, samples);
 
 
 		List<String> header = Lists.newArrayList("RunScript", "Config", "RunId", "Output");
@@ -144,11 +148,14 @@ public class CreateBatteryForCluster<T> implements Callable<Integer> {
 			String runId = runName + run.id;
 			String configFileName = "config_" + runName + run.id + ".xml";
 
+			// configs are created one at a time and are not kept
+			Config config = run.getConfig();
+
 			String outputPath = batchOutput + "/" + prepare.setup.getOutputName(run);
-			run.config.controler().setOutputDirectory(outputPath);
+			config.controler().setOutputDirectory(outputPath);
 
-			prepare.setup.writeAuxiliaryFiles(dir, run.config);
-			ConfigUtils.writeConfig(run.config, input.resolve(configFileName).toString());
+			prepare.setup.writeAuxiliaryFiles(dir, config);
+			ConfigUtils.writeConfig(config, input.resolve(configFileName).toString());
 
 			bashScriptWriter.write("qsub -N " + runId + " run.sh");
 			bashScriptWriter.newLine();
@@ -193,6 +200,7 @@ public class CreateBatteryForCluster<T> implements Callable<Integer> {
 				"export EPISIM_SETUP='" + setup.getName() + "'",
 				"export EPISIM_PARAMS='" + params.getName() + "'",
 				"export EPISIM_OUTPUT='" + batchOutput.toString() + "'",
+				"export EPISIM_SAMPLES='" + samples + "'",
 				"",
 				String.format("sbatch --export=ALL --array=1-%d --ntasks-per-socket=%d --job-name=%s runParallel.sh",
 						(int) Math.ceil(prepare.runs.size() / (perSocket * 4d)), perSocket, runName)
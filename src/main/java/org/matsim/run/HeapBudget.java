@@ -0,0 +1,207 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.run;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.episim.LiveMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Admits runs only while their projected heap usage stays below a budget.
+ * The heap retained by one run is measured once, when the first admitted run, the pilot, has simulated its first day.
+ * Until then no other run is admitted.
+ */
+final class HeapBudget {
+
+	private static final Logger log = LogManager.getLogger(HeapBudget.class);
+	private static final long MB = 1024 * 1024;
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	private final boolean enabled;
+	private final long budget;
+	private final int maxRuns;
+
+	/**
+	 * Heap that is in use after a full gc.
+	 */
+	private final LongSupplier usedHeap;
+
+	/**
+	 * Last simulated day of a run.
+	 */
+	private final ToIntFunction<LiveMetrics> day;
+
+	/**
+	 * Heap used before any run was started.
+	 */
+	private final long baseline;
+
+	/**
+	 * Heap retained by one run, negative until measured.
+	 */
+	private long perRun = -1;
+	private int running = 0;
+	private LiveMetrics pilot;
+	private boolean measuring = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param fraction fraction of the maximum heap that may be used, non-positive values disable the budget
+	 * @param maxRuns  maximum number of concurrent runs regardless of the heap
+	 */
+	HeapBudget(double fraction, int maxRuns) {
+		this(fraction > 0 ? (long) (fraction * MEMORY.getHeapMemoryUsage().getMax()) : 0, maxRuns, HeapBudget::usedAfterGc, HeapBudget::getDay);
+	}
+
+	/**
+	 * Constructor with the heap measurement given explicitly.
+	 *
+	 * @param budget   heap in bytes that may be used, non-positive values disable the budget
+	 * @param usedHeap heap in use, which should not contain garbage
+	 * @param day      last simulated day of a run
+	 */
+	HeapBudget(long budget, int maxRuns, LongSupplier usedHeap, ToIntFunction<LiveMetrics> day) {
+		this.enabled = budget > 0;
+		this.budget = budget;
+		this.maxRuns = maxRuns;
+		this.usedHeap = usedHeap;
+		this.day = day;
+		this.baseline = enabled ? usedHeap.getAsLong() : 0;
+
+		if (enabled)
+			log.info("Heap budget is {} MB, of which {} MB are used by the scenario", budget / MB, baseline / MB);
+	}
+
+	/**
+	 * Blocks until {@code runs} more runs can be admitted.
+	 *
+	 * @param metrics metrics of the run, which are used to detect the end of its first day
+	 */
+	void acquire(LiveMetrics metrics, int runs) {
+		if (!enabled) return;
+
+		try {
+			while (!tryAcquire(metrics, runs)) {
+				if (startMeasurement()) {
+					// the gc is run without holding the monitor, so that finishing runs are not blocked
+					finishMeasurement(usedHeap.getAsLong());
+				} else {
+					synchronized (this) {
+						wait(1000);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted while waiting for heap, run is admitted anyway");
+			admit(metrics, runs);
+		}
+	}
+
+	/**
+	 * Admits {@code runs} more runs if they fit into the budget.
+	 *
+	 * @return whether the runs were admitted
+	 */
+	synchronized boolean tryAcquire(LiveMetrics metrics, int runs) {
+		if (!enabled) return true;
+
+		if (!canAdmit(runs))
+			return false;
+
+		admit(metrics, runs);
+		return true;
+	}
+
+	private synchronized void admit(LiveMetrics metrics, int runs) {
+		if (perRun < 0 && pilot == null)
+			pilot = metrics;
+
+		running += runs;
+	}
+
+	/**
+	 * Releases runs, which have been admitted by {@link #acquire(LiveMetrics, int)}.
+	 */
+	synchronized void release(LiveMetrics metrics, int runs) {
+		if (!enabled) return;
+
+		running -= runs;
+
+		// pilot finished without a measurement, the next run will be the new pilot
+		if (metrics == pilot && perRun < 0)
+			pilot = null;
+
+		notifyAll();
+	}
+
+	private boolean canAdmit(int runs) {
+		if (running == 0)
+			return true;
+
+		return perRun >= 0 && running + runs <= maxRuns && baseline + (running + runs) * perRun <= budget;
+	}
+
+	/**
+	 * Whether this thread should measure the heap now, which is the case once the pilot has simulated its first day.
+	 */
+	private synchronized boolean startMeasurement() {
+		if (perRun >= 0 || measuring || pilot == null || day.applyAsInt(pilot) < 1)
+			return false;
+
+		measuring = true;
+		return true;
+	}
+
+	private synchronized void finishMeasurement(long used) {
+		measuring = false;
+
+		// the pilot finished during the measurement, the next run will be measured instead
+		if (pilot == null || running == 0)
+			return;
+
+		perRun = Math.max(1, (used - baseline) / running);
+
+		long admitted = Math.max(1, Math.min(maxRuns, (budget - baseline) / perRun));
+		log.info("Measured {} MB heap per run, admitting {} concurrent runs ({} threads available)", perRun / MB, admitted, maxRuns);
+
+		if (baseline + perRun > budget)
+			log.warn("Heap budget is too small for even one run, runs will be executed one at a time");
+
+		notifyAll();
+	}
+
+	private static long usedAfterGc() {
+		MEMORY.gc();
+		return MEMORY.getHeapMemoryUsage().getUsed();
+	}
+
+	private static int getDay(LiveMetrics metrics) {
+		Object day = metrics.getSnapshot().get("day");
+		return day instanceof Integer ? (int) day : -1;
+	}
+}
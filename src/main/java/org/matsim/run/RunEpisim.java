@@ -32,6 +32,8 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.OutputDirectoryLogging;
 import org.matsim.episim.EpisimModule;
 import org.matsim.episim.EpisimRunner;
+import org.matsim.episim.LiveMetrics;
+import org.matsim.episim.MetricsServer;
 import org.matsim.run.modules.OpenBerlinScenario;
 import picocli.CommandLine;
 
@@ -91,6 +93,12 @@ public class RunEpisim implements Callable<Integer> {
 	@CommandLine.Option(names = "--log", description = "Enable logging to output directory.", defaultValue = "false")
 	private boolean logToOutput;
 
+	@CommandLine.Option(names = "--metrics-port", description = "Serve live metrics as json on this port (0=disabled).", defaultValue = "0")
+	private int metricsPort;
+
+	@CommandLine.Option(names = "--resume", description = "Continue from the latest checkpoint in the output directory, if there is one.", defaultValue = "false")
+	private boolean resume;
+
 	@CommandLine.Parameters(hidden = true)
 	private String[] remainder;
 
@@ -189,7 +197,19 @@ public class RunEpisim implements Callable<Integer> {
 		if (logToOutput) OutputDirectoryLogging.initLoggingWithOutputDirectory(config.controler().getOutputDirectory());
 
 		EpisimRunner runner = injector.getInstance(EpisimRunner.class);
-		runner.run(200);
+
+		MetricsServer server = null;
+		if (metricsPort > 0) {
+			server = new MetricsServer(metricsPort);
+			server.register(config.controler().getOutputDirectory(), injector.getInstance(LiveMetrics.class));
+		}
+
+		try {
+			if (!(resume && runner.resumeFromCheckpoint(200)))
+				runner.run(200);
+		} finally {
+			if (server != null) server.close();
+		}
 
 		if (logToOutput) OutputDirectoryLogging.closeOutputDirLogging();
 
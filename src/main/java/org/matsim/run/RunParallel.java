@@ -20,6 +20,7 @@
  */
 package org.matsim.run;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -28,24 +29,36 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.episim.*;
+import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.ShutdownPolicy;
 import picocli.CommandLine;
 
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Execute one {@link BatchRun} run in parallel. The work can also be distributed across multiple runners,
- * by using the <em>--worker-index</em> and <em>--total-worker</em> options.
+ * by using the <em>--worker-index</em> and <em>--total-worker</em> options, or dynamically with <em>--queue</em>.
+ * Runs are executed longest first, according to the runtimes of previous executions.
+ * Instead of all parameter combinations, a sample can be run with <em>--samples</em>, and <em>--halving</em> continues only the best runs.
+ * With <em>--branch</em> runs that only differ in options taking effect later share the simulation of the days before.
  *
  * @param <T> type to match batch run and params
  * @see CreateBatteryForCluster
@@ -82,6 +95,39 @@ public class RunParallel<T> implements Callable<Integer> {
 	@CommandLine.Option(names = "--max-jobs", defaultValue = "${env:EPISIM_MAX_JOBS:-0}", description = "Maximum number of jobs to execute. (0=all)")
 	private int maxJobs;
 
+	@CommandLine.Option(names = "--metrics-port", defaultValue = "0", description = "Serve live metrics of all tasks as json on this port. (0=disabled)")
+	private int metricsPort;
+
+	@CommandLine.Option(names = "--branch", defaultValue = "false", description = "Simulate days before the first option day only once for runs " +
+			"that differ only in options and continue each run from a snapshot of that day.")
+	private boolean branch;
+
+	@CommandLine.Option(names = "--resume", defaultValue = "false", description = "Continue runs from their latest checkpoint, if there is one.")
+	private boolean resume;
+
+	@CommandLine.Option(names = "--queue", defaultValue = "false", description = "Let workers claim runs dynamically through lock files in the output directory, " +
+			"instead of assigning them by worker index. With --resume, runs that were interrupted are claimed again " +
+			"a few minutes after their worker stopped. Remove the queue directory to execute finished runs again.")
+	private boolean queue;
+
+	@CommandLine.Option(names = "--history", description = "File with runtimes of previous runs, which are executed longest first. (default: runtimes.tsv in output)")
+	private Path history;
+
+	@CommandLine.Option(names = "--heap-budget", defaultValue = "0", description = "Fraction of the maximum heap that may be used. " +
+			"New runs are only started while the projected heap, measured after the first day of the first run, stays below it. (0=disabled)")
+	private double heapBudget;
+
+	@CommandLine.Option(names = "--samples", defaultValue = "${env:EPISIM_SAMPLES:-0}", description = "Number of parameter combinations " +
+			"drawn by latin hypercube sampling, instead of running all of them. (0=all)")
+	private int samples;
+
+	@CommandLine.Option(names = "--halving", defaultValue = "0", description = "Run successive halving with this reduction factor: " +
+			"all runs are simulated for --min-days, then only the best runs by score continue for factor times as many days. " +
+			"The setup has to implement BatchRun#score. (0=disabled)")
+	private int halving;
+
+	@CommandLine.Option(names = "--min-days", defaultValue = "20", description = "Days simulated by all runs in the first round of successive halving.")
+	private int minDays;
 
 	@SuppressWarnings("rawtypes")
 	public static void main(String[] args) {
@@ -92,61 +138,244 @@ public class RunParallel<T> implements Callable<Integer> {
 	public Integer call() throws Exception {
 
 		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		MetricsServer server = metricsPort > 0 ? new MetricsServer(metricsPort) : null;
 
-		PreparedRun prepare = BatchRun.prepare(setup, params);
+		try {
+			return execute(executor, server);
+		} finally {
+			executor.shutdown();
+			if (server != null) server.close();
+		}
+	}
+
+	/**
+	 * Prepare all runs and execute the ones of this worker.
+	 */
+	private int execute(ExecutorService executor, @Nullable MetricsServer server) throws IOException {
+
+		PreparedRun prepare = BatchRun.prepare(setup, params, samples);
 		List<CompletableFuture<Void>> futures = new ArrayList<>();
 
 		log.info("Reading base scenario...");
 
 		// All config need to have the same base config (population, events, etc..)
-		Config baseConfig = prepare.runs.get(0).config;
+		Config baseConfig = prepare.runs.get(0).getConfig();
 		EpisimConfigGroup episimBase = ConfigUtils.addOrGetModule(baseConfig, EpisimConfigGroup.class);
 
 		Scenario scenario = ScenarioUtils.loadScenario(baseConfig);
 		ReplayHandler replay = new ReplayHandler(episimBase, scenario);
+		PopulationSkeleton skeleton = new PopulationSkeleton();
+		HeapBudget budget = new HeapBudget(heapBudget, threads);
 
-		int i = 0;
-		for (PreparedRun.Run run : prepare.runs) {
-			if (i++ % totalWorker != workerIndex)
-				continue;
+		if (halving > 1) {
+			if (!overridesScore(prepare.setup)) {
+				log.error("Successive halving needs a score, {} has to implement BatchRun#score.", prepare.setup.getClass().getSimpleName());
+				return 1;
+			}
 
-			if (maxJobs > 0 && i >= maxJobs) break;
+			if (branch || queue || totalWorker > 1)
+				log.warn("Successive halving runs all tasks in this worker, the options for branching and distribution are ignored.");
 
-			EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(run.config, EpisimConfigGroup.class);
-			if (!episimBase.getInputEventsFile().equals(episimConfig.getInputEventsFile())) {
-				log.error("Input files differs for run {}", run.id);
-				return 1;
+			return runSuccessiveHalving(prepare, scenario, replay, skeleton, budget, server, executor);
+		}
+
+		int day = prepare.getDivergenceDay();
+		List<List<PreparedRun.Run>> groups = branch && day > 1 ? prepare.groupByPrefix() :
+				prepare.runs.stream().map(List::of).collect(Collectors.toList());
+
+		if (branch && day <= 1)
+			log.warn("Runs can not be branched, because no option takes effect after the first day.");
+
+		TaskScheduler scheduler = new TaskScheduler(history != null ? history : output.resolve("runtimes.tsv"), queue ? output.resolve("queue") : null, resume);
+
+		// with static assignment all workers need to see the same order, so only the runs of this worker are sorted
+		List<List<PreparedRun.Run>> assigned = new ArrayList<>();
+		for (int i = 0; i < groups.size(); i++) {
+			if (maxJobs > 0 && i + 1 >= maxJobs) break;
+
+			if (queue || i % totalWorker == workerIndex)
+				assigned.add(groups.get(i));
+		}
+
+		assigned = scheduler.sort(assigned, group -> group.stream().map(run -> prepare.setup.getOutputName(run)).collect(Collectors.toList()));
+
+		// configs are only created when a task is picked up
+		Function<PreparedRun.Run, ParallelModule> modules = run -> createModule(prepare, run, episimBase, scenario, replay, skeleton);
+
+		for (List<PreparedRun.Run> group : assigned) {
+
+			if (group.size() == 1) {
+				PreparedRun.Run run = group.get(0);
+				futures.add(CompletableFuture.runAsync(scheduler.claimed(prepare.setup.getOutputName(run),
+						() -> new Task(modules.apply(run), server, budget, resume).run()), executor));
+				continue;
 			}
 
-			String outputPath = output + "/" + prepare.setup.getOutputName(run);
-			Path out = Paths.get(outputPath);
-			if (!Files.exists(out)) Files.createDirectories(out);
-			run.config.controler().setOutputDirectory(outputPath);
+			Path prefixOutput = output.resolve("prefix").resolve(prepare.setup.getOutputName(group.get(0)));
 
-			futures.add(CompletableFuture.runAsync(new Task(new ParallelModule(scenario, run.config, replay)), executor));
+			// the whole group is claimed at once, the prefix is simulated directly afterwards on the same thread
+			String name = "prefix-" + prepare.setup.getOutputName(group.get(0));
+			futures.add(CompletableFuture.supplyAsync(() -> scheduler.claim(name), executor).thenCompose(claimed -> {
+				if (!claimed)
+					return CompletableFuture.<Void>completedFuture(null);
+
+				try {
+					Files.createDirectories(prefixOutput);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				ParallelModule first = modules.apply(group.get(0));
+				Prefix prefix = new Prefix(first, server, budget, prefixOutput, day - 1);
+
+				List<EpisimReporting.InfectionReport> reports = prefix.get();
+				List<CompletableFuture<Void>> branches = new ArrayList<>();
+				for (PreparedRun.Run run : group) {
+
+					// branches of an interrupted group may have been finished already
+					if (resume && scheduler.isCompleted(prepare.setup.getOutputName(run)))
+						continue;
+
+					// runs with a different config or policy before the divergence day have to be simulated from the beginning
+					boolean samePrefix = reports != null && canContinue(first.config, run, reports, day);
+
+					branches.add(CompletableFuture.runAsync(scheduler.timed(prepare.setup.getOutputName(run),
+							() -> new Task(modules.apply(run), server, budget, resume, samePrefix ? prefix.snapshot : null, prefixOutput).run()), executor));
+				}
+
+				return CompletableFuture.allOf(branches.toArray(new CompletableFuture[0])).thenRun(() -> {
+					prefix.cleanUp();
+					scheduler.complete(name);
+				});
+			}));
 		}
 
-		log.info("Created {} (out of {}) tasks for worker {} ({} threads available)", futures.size(), prepare.runs.size(), workerIndex, threads);
+		log.info("Created {} (out of {}) tasks for worker {} ({} threads available)", futures.size(), groups.size(), workerIndex, threads);
+		if (queue)
+			log.info("Tasks will be claimed through lock files in {}", output.resolve("queue"));
 
 		// Wait for all futures to complete
 		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 
 		log.info("Finished all tasks");
-		executor.shutdown();
 
 		return 0;
 	}
 
+	/**
+	 * Simulates all runs for a few days, and continues only the best runs according to {@link BatchRun#score(PreparedRun.Run, EpisimReporting.InfectionReport)}
+	 * for a longer time, until the remaining runs reach the last day. Runs are continued from checkpoints of their previous round.
+	 */
+	private int runSuccessiveHalving(PreparedRun prepare, Scenario scenario, ReplayHandler replay, PopulationSkeleton skeleton,
+									 HeapBudget budget, @Nullable MetricsServer server, ExecutorService executor) throws IOException {
+
+		EpisimConfigGroup episimBase = ConfigUtils.addOrGetModule(prepare.runs.get(0).getConfig(), EpisimConfigGroup.class);
+
+		// runs are held for all rounds, but their configs are only created when they are simulated for the first time
+		Map<PreparedRun.Run, Rung> rungs = new LinkedHashMap<>();
+		for (PreparedRun.Run run : prepare.runs) {
+			rungs.put(run, new Rung(() -> {
+				ParallelModule module = createModule(prepare, run, episimBase, scenario, replay, skeleton);
+
+				// all rounds end on multiples of this interval
+				ConfigUtils.addOrGetModule(module.config, EpisimConfigGroup.class).setCheckpointInterval(minDays);
+				return module;
+			}, server, budget));
+		}
+
+		List<PreparedRun.Run> active = new ArrayList<>(rungs.keySet());
+		int horizon = minDays;
+		boolean first = true;
+
+		try (BufferedWriter summary = Files.newBufferedWriter(output.resolve("halving.tsv"))) {
+			summary.write("run\tday\tscore\tfinished\n");
+
+			while (true) {
+				List<CompletableFuture<Void>> futures = new ArrayList<>();
+				for (PreparedRun.Run run : active) {
+					Rung rung = rungs.get(run);
+					if (!rung.finished)
+						futures.add(CompletableFuture.runAsync(rung.until(horizon, first), executor));
+				}
+
+				log.info("Simulating {} runs until day {}", futures.size(), horizon);
+				CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+				Map<PreparedRun.Run, Double> scores = new HashMap<>();
+				for (PreparedRun.Run run : active) {
+					Rung rung = rungs.get(run);
+					double score = rung.report != null ? prepare.setup.score(run, rung.report) : Double.NEGATIVE_INFINITY;
+					if (Double.isNaN(score))
+						throw new IllegalStateException("Score of run " + prepare.setup.getOutputName(run) + " is NaN");
+
+					scores.put(run, score);
+					summary.write(String.format(Locale.US, "%s\t%d\t%f\t%b\n", prepare.setup.getOutputName(run), horizon, scores.get(run), rung.finished));
+				}
+				summary.flush();
+
+				if (horizon >= 200)
+					break;
+
+				int keep = Math.max(1, (int) Math.ceil((double) active.size() / halving));
+				active.sort(Comparator.comparingDouble((PreparedRun.Run run) -> scores.get(run)).reversed());
+				active = new ArrayList<>(active.subList(0, keep));
+
+				horizon = Math.min(200, horizon * halving);
+				first = false;
+			}
+		}
+
+		log.info("Finished successive halving, {} runs reached the last day", active.size());
+		return 0;
+	}
+
+	/**
+	 * Whether the setup defines its own score, instead of the default of {@link BatchRun}.
+	 */
+	private static boolean overridesScore(BatchRun<?> setup) {
+		try {
+			return !setup.getClass().getMethod("score", PreparedRun.Run.class, EpisimReporting.InfectionReport.class).isDefault();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates the config of a run and the module to simulate it.
+	 */
+	private ParallelModule createModule(PreparedRun prepare, PreparedRun.Run run, EpisimConfigGroup episimBase,
+										Scenario scenario, ReplayHandler replay, PopulationSkeleton skeleton) {
+
+		Config config = run.getConfig();
+
+		// All config need to have the same base config (population, events, etc..)
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		if (!episimBase.getInputEventsFile().equals(episimConfig.getInputEventsFile()))
+			throw new IllegalStateException("Input files differs for run " + run.id);
+
+		String outputPath = output + "/" + prepare.setup.getOutputName(run);
+		try {
+			Files.createDirectories(Path.of(outputPath));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		config.controler().setOutputDirectory(outputPath);
+		return new ParallelModule(scenario, config, replay, skeleton);
+	}
+
 	private static final class ParallelModule extends AbstractModule {
 
 		private final Scenario scenario;
 		private final Config config;
 		private final ReplayHandler replay;
+		private final PopulationSkeleton skeleton;
 
-		private ParallelModule(Scenario scenario, Config config, ReplayHandler replay) {
+		private ParallelModule(Scenario scenario, Config config, ReplayHandler replay, PopulationSkeleton skeleton) {
 			this.scenario = scenario;
 			this.config = config;
 			this.replay = replay;
+			this.skeleton = skeleton;
 		}
 
 		@Override
@@ -154,15 +383,138 @@ public class RunParallel<T> implements Callable<Integer> {
 			bind(Scenario.class).toInstance(scenario);
 			bind(Config.class).toInstance(config);
 			bind(ReplayHandler.class).toInstance(replay);
+			bind(PopulationSkeleton.class).toInstance(skeleton);
+		}
+	}
+
+	/**
+	 * Checks whether a run can be continued from the snapshot of a prefix, which has been simulated with {@code prefix}.
+	 * The reason is logged if this is not possible.
+	 */
+	private static boolean canContinue(Config prefix, PreparedRun.Run run, List<EpisimReporting.InfectionReport> reports, int day) {
+
+		if (!hasSameConfig(prefix, run.getConfig())) {
+			log.warn("Config of run {} differs apart from the policy, it will be simulated completely", run.id);
+			return false;
+		}
+
+		if (!hasSamePrefix(prefix, run.getConfig(), reports)) {
+			log.warn("Policy of run {} differs before day {}, it will be simulated completely", run.id, day);
+			return false;
 		}
+
+		return true;
+	}
+
+	/**
+	 * Checks whether all parameters of both configs are the same, except for the policy and the output directory.
+	 * Parameters that are changed only after the divergence day must be expressed by the policy, any other difference
+	 * would already change the days before.
+	 */
+	private static boolean hasSameConfig(Config prefix, Config branch) {
+		return getComparableParams(prefix, branch).equals(getComparableParams(branch, prefix));
+	}
+
+	/**
+	 * Parameters of all groups in {@code config}. Groups are added to a config when they are first used,
+	 * so groups that are only present in {@code other} are added with their default values.
+	 */
+	private static Map<String, String> getComparableParams(Config config, Config other) {
+		Map<String, String> params = new HashMap<>();
+		for (ConfigGroup group : config.getModules().values())
+			addParams(params, group.getName(), group);
+
+		for (ConfigGroup group : other.getModules().values()) {
+			if (config.getModules().containsKey(group.getName()))
+				continue;
+
+			try {
+				addParams(params, group.getName(), group.getClass().getDeclaredConstructor().newInstance());
+			} catch (ReflectiveOperationException e) {
+				// can not be compared, the configs are considered different
+				params.put(group.getName(), "missing");
+			}
+		}
+
+		String episim = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).getName();
+		params.remove(ControlerConfigGroup.GROUP_NAME + ".outputDirectory");
+		params.remove(episim + ".policyClass");
+		params.remove(episim + ".policyConfig");
+		return params;
+	}
+
+	private static void addParams(Map<String, String> params, String prefix, ConfigGroup group) {
+		group.getParams().forEach((key, value) -> params.put(prefix + "." + key, value));
+
+		for (Map.Entry<String, ? extends Collection<? extends ConfigGroup>> e : group.getParameterSets().entrySet()) {
+			int i = 0;
+			for (ConfigGroup set : e.getValue())
+				addParams(params, prefix + "." + e.getKey() + "[" + i++ + "]", set);
+		}
+	}
+
+	/**
+	 * Checks whether the policy of {@code branch} sets the same restrictions as the policy of {@code prefix},
+	 * given the reports of all days before the divergence.
+	 */
+	private static boolean hasSamePrefix(Config prefix, Config branch, List<EpisimReporting.InfectionReport> reports) {
+
+		EpisimConfigGroup a = ConfigUtils.addOrGetModule(prefix, EpisimConfigGroup.class);
+		EpisimConfigGroup b = ConfigUtils.addOrGetModule(branch, EpisimConfigGroup.class);
+
+		ShutdownPolicy policyA = a.createPolicyInstance();
+		ShutdownPolicy policyB = b.createPolicyInstance();
+		Map<String, Restriction> restrictionsA = a.createInitialRestrictions();
+		Map<String, Restriction> restrictionsB = b.createInitialRestrictions();
+
+		if (!restrictionsA.keySet().equals(restrictionsB.keySet()))
+			return false;
+
+		for (EpisimReporting.InfectionReport report : reports) {
+			policyA.updateRestrictions(report, ImmutableMap.copyOf(restrictionsA));
+			policyB.updateRestrictions(report, ImmutableMap.copyOf(restrictionsB));
+
+			for (Map.Entry<String, Restriction> e : restrictionsA.entrySet()) {
+				Restriction r = restrictionsB.get(e.getKey());
+				if (e.getValue().getRemainingFraction() != r.getRemainingFraction() || e.getValue().getExposure() != r.getExposure()
+						|| e.getValue().getRequireMask() != r.getRequireMask())
+					return false;
+			}
+		}
+
+		return true;
 	}
 
 	private static final class Task implements Runnable {
 
 		private final ParallelModule module;
+		@Nullable
+		private final MetricsServer server;
+		private final HeapBudget budget;
+
+		/**
+		 * Snapshot to continue from, or null to simulate from the beginning.
+		 */
+		@Nullable
+		private final Path snapshot;
+		private final Path prefixOutput;
+
+		/**
+		 * Whether to continue from the latest checkpoint of the run.
+		 */
+		private final boolean resume;
+
+		private Task(ParallelModule module, @Nullable MetricsServer server, HeapBudget budget, boolean resume) {
+			this(module, server, budget, resume, null, null);
+		}
 
-		private Task(ParallelModule module) {
+		private Task(ParallelModule module, @Nullable MetricsServer server, HeapBudget budget, boolean resume, @Nullable Path snapshot, Path prefixOutput) {
 			this.module = module;
+			this.server = server;
+			this.budget = budget;
+			this.resume = resume;
+			this.snapshot = snapshot;
+			this.prefixOutput = prefixOutput;
 		}
 
 		@Override
@@ -171,11 +523,159 @@ public class RunParallel<T> implements Callable<Integer> {
 			// overwrite the scenario definition
 			Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(module));
 			EpisimRunner runner = injector.getInstance(EpisimRunner.class);
-
-			runner.run(200);
+			LiveMetrics metrics = injector.getInstance(LiveMetrics.class);
+
+			if (server != null)
+				server.register(module.config.controler().getOutputDirectory(), metrics);
+
+			budget.acquire(metrics, 1);
+			try {
+				if (resume && runner.resumeFromCheckpoint(200))
+					log.info("Resumed from checkpoint: {}", module.config.controler().getOutputDirectory());
+				else if (snapshot != null)
+					runner.resume(snapshot, prefixOutput, 200);
+				else
+					runner.run(200);
+			} catch (IOException e) {
+				log.error("Could not resume simulation", e);
+				throw new UncheckedIOException(e);
+			} finally {
+				budget.release(metrics, 1);
+			}
 
 			log.info("Task finished: {}", module.config.controler().getOutputDirectory());
 		}
 	}
 
+	/**
+	 * One run of the successive halving, which is continued from its latest checkpoint in each round.
+	 */
+	private static final class Rung {
+
+		private final Supplier<ParallelModule> factory;
+		@Nullable
+		private final MetricsServer server;
+		private final HeapBudget budget;
+
+		private ParallelModule module;
+
+		/**
+		 * Report of the last simulated day.
+		 */
+		private EpisimReporting.InfectionReport report;
+
+		/**
+		 * Whether the simulation has ended on its own.
+		 */
+		private boolean finished;
+
+		private Rung(Supplier<ParallelModule> factory, @Nullable MetricsServer server, HeapBudget budget) {
+			this.factory = factory;
+			this.server = server;
+			this.budget = budget;
+		}
+
+		/**
+		 * Task to simulate this run until the given day.
+		 */
+		private Runnable until(int day, boolean first) {
+			return () -> {
+				if (module == null)
+					module = factory.get();
+
+				Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(module));
+				EpisimRunner runner = injector.getInstance(EpisimRunner.class);
+				LiveMetrics metrics = injector.getInstance(LiveMetrics.class);
+
+				if (server != null)
+					server.register(module.config.controler().getOutputDirectory(), metrics);
+
+				budget.acquire(metrics, 1);
+				try {
+					if (first || !runner.resumeFromCheckpoint(day))
+						runner.run(day);
+				} catch (IOException e) {
+					log.error("Could not resume simulation", e);
+					throw new UncheckedIOException(e);
+				} finally {
+					budget.release(metrics, 1);
+				}
+
+				InfectionEventHandler handler = injector.getInstance(InfectionEventHandler.class);
+				report = handler.getReport();
+				finished = handler.isFinished();
+
+				log.info("Run simulated until day {}: {}", day, module.config.controler().getOutputDirectory());
+			};
+		}
+	}
+
+	/**
+	 * Simulates the shared days of a group of runs and writes the snapshot to continue from.
+	 */
+	private static final class Prefix implements Supplier<List<EpisimReporting.InfectionReport>> {
+
+		private final ParallelModule module;
+		@Nullable
+		private final MetricsServer server;
+		private final HeapBudget budget;
+		private final Path output;
+		private final Path snapshot;
+		private final int day;
+
+		private Prefix(ParallelModule module, @Nullable MetricsServer server, HeapBudget budget, Path output, int day) {
+			this.module = module;
+			this.server = server;
+			this.budget = budget;
+			this.output = output;
+			this.snapshot = output.resolve("snapshot.bin.gz");
+			this.day = day;
+		}
+
+		@Override
+		public List<EpisimReporting.InfectionReport> get() {
+
+			// the config of the first run is used, but the output is written to a separate directory
+			String outputDirectory = module.config.controler().getOutputDirectory();
+			module.config.controler().setOutputDirectory(output.toString());
+
+			try {
+				Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(module));
+				EpisimRunner runner = injector.getInstance(EpisimRunner.class);
+				LiveMetrics metrics = injector.getInstance(LiveMetrics.class);
+
+				if (server != null)
+					server.register(output.toString(), metrics);
+
+				budget.acquire(metrics, 1);
+				List<EpisimReporting.InfectionReport> reports;
+				try {
+					reports = runner.snapshot(day, snapshot);
+				} finally {
+					budget.release(metrics, 1);
+				}
+
+				log.info("Prefix finished: {}", output);
+				return reports;
+
+			} catch (IOException e) {
+				log.error("Could not write snapshot", e);
+				throw new UncheckedIOException(e);
+			} finally {
+				module.config.controler().setOutputDirectory(outputDirectory);
+			}
+		}
+
+		/**
+		 * Removes the snapshot after all runs are finished.
+		 */
+		void cleanUp() {
+			try {
+				Files.deleteIfExists(snapshot);
+			} catch (IOException e) {
+				log.warn("Could not delete snapshot {}", snapshot, e);
+			}
+		}
+	}
+
 }
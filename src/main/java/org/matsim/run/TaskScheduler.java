@@ -0,0 +1,287 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.run;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Orders the runs of a batch by their expected runtime, which is taken from a history of previous runs.
+ * Runs can also be distributed dynamically between several workers, which claim each run by creating a lock file
+ * in a directory on a shared file system. Finished runs are marked with a completion file, so that runs of an interrupted
+ * batch can be claimed again when it is resumed.
+ */
+final class TaskScheduler {
+
+	private static final Logger log = LogManager.getLogger(TaskScheduler.class);
+
+	/**
+	 * Interval in which held locks are touched, so that other workers can see that the run is still in progress.
+	 */
+	static final Duration HEARTBEAT = Duration.ofMinutes(1);
+
+	/**
+	 * Locks not touched for this duration belong to interrupted runs.
+	 */
+	static final Duration LEASE = HEARTBEAT.multipliedBy(5);
+
+	private final Path history;
+	@Nullable
+	private final Path queue;
+	private final boolean resume;
+
+	/**
+	 * Locks held by this worker, whose runs are not finished yet.
+	 */
+	private final Set<Path> held = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Runtime in seconds by name of the run.
+	 */
+	private final Map<String, Double> runtimes = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param history file with the runtimes of previous runs, will be created if it does not exist
+	 * @param queue   directory for lock files, or null if runs should not be claimed
+	 * @param resume  whether locks of interrupted runs can be taken over
+	 */
+	TaskScheduler(Path history, @Nullable Path queue, boolean resume) throws IOException {
+		this.history = history;
+		this.queue = queue;
+		this.resume = resume;
+
+		if (Files.exists(history)) {
+			// later entries replace earlier ones
+			for (String line : Files.readAllLines(history)) {
+				String[] row = line.split("\t");
+				if (row.length != 2 || row[0].equals("run")) continue;
+
+				try {
+					runtimes.put(row[0], Double.parseDouble(row[1]));
+				} catch (NumberFormatException e) {
+					log.warn("Invalid runtime in {}: {}", history, line);
+				}
+			}
+
+			log.info("Read {} runtimes from {}", runtimes.size(), history);
+		}
+
+		if (queue != null) {
+			Files.createDirectories(queue);
+
+			ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "queue-heartbeat");
+				t.setDaemon(true);
+				return t;
+			});
+			heartbeat.scheduleAtFixedRate(this::touch, HEARTBEAT.toSeconds(), HEARTBEAT.toSeconds(), TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Name of a run, which is the name of its output directory.
+	 */
+	static String getName(Config config) {
+		return Path.of(config.controler().getOutputDirectory()).getFileName().toString();
+	}
+
+	/**
+	 * Expected runtime of a run in seconds. Runs without history are expected to take longer than all others,
+	 * so their runtime is known as early as possible.
+	 */
+	double estimate(String name) {
+		return runtimes.getOrDefault(name, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Sorts {@code items} by their expected runtime, longest first. Items with equal estimates keep their order.
+	 *
+	 * @param names names of the runs that are part of one item
+	 */
+	<T> List<T> sort(List<T> items, Function<T, List<String>> names) {
+		List<T> sorted = new ArrayList<>(items);
+		sorted.sort(Comparator.comparingDouble((T item) -> names.apply(item).stream().mapToDouble(this::estimate).sum()).reversed());
+		return sorted;
+	}
+
+	/**
+	 * Claims a run for this worker. When resuming, runs that were claimed but not finished can be claimed again,
+	 * once their lock was not touched for {@link #LEASE}.
+	 *
+	 * @return false if the run was already claimed by another worker
+	 */
+	boolean claim(String name) {
+		if (queue == null) return true;
+
+		Path lock = queue.resolve(name + ".lock");
+		try {
+			Files.createFile(lock);
+			held.add(lock);
+			return true;
+		} catch (FileAlreadyExistsException e) {
+			// claimed before
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		try {
+			return resume && !isCompleted(name) && takeOver(name, lock);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Take over the lock of an interrupted run. Only one worker at a time may try this for the same run.
+	 */
+	private boolean takeOver(String name, Path lock) throws IOException {
+
+		Path takeover = queue.resolve(name + ".takeover");
+		try {
+			// left over if a worker was interrupted during the take over
+			if (isStale(takeover))
+				Files.deleteIfExists(takeover);
+
+			Files.createFile(takeover);
+		} catch (FileAlreadyExistsException e) {
+			return false;
+		}
+
+		try {
+			// the lock might have been taken over already
+			if (!isStale(lock))
+				return false;
+
+			Files.setLastModifiedTime(lock, FileTime.from(Instant.now()));
+			held.add(lock);
+
+			log.info("Taking over interrupted run {}", name);
+			return true;
+
+		} finally {
+			Files.delete(takeover);
+		}
+	}
+
+	private static boolean isStale(Path lock) throws IOException {
+		try {
+			return Files.getLastModifiedTime(lock).toInstant().isBefore(Instant.now().minus(LEASE));
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether a run was finished by any worker. Always false if runs are not claimed.
+	 */
+	boolean isCompleted(String name) {
+		return queue != null && Files.exists(queue.resolve(name + ".done"));
+	}
+
+	/**
+	 * Marks a run as finished.
+	 */
+	void complete(String name) {
+		if (queue == null) return;
+
+		try {
+			Files.writeString(queue.resolve(name + ".done"), "", StandardOpenOption.CREATE);
+		} catch (IOException e) {
+			log.warn("Could not mark run {} as finished", name, e);
+		}
+
+		held.remove(queue.resolve(name + ".lock"));
+	}
+
+	/**
+	 * Touches all held locks.
+	 */
+	private void touch() {
+		FileTime now = FileTime.from(Instant.now());
+		for (Path lock : held) {
+			try {
+				Files.setLastModifiedTime(lock, now);
+			} catch (IOException e) {
+				log.warn("Could not touch lock {}", lock, e);
+			}
+		}
+	}
+
+	/**
+	 * Wraps a task, whose runtime will be added to the history.
+	 */
+	Runnable timed(String name, Runnable task) {
+		return () -> {
+			long start = System.nanoTime();
+			task.run();
+			record(name, (System.nanoTime() - start) / 1e9);
+		};
+	}
+
+	/**
+	 * Wraps a task, which is only executed if it can be claimed by this worker.
+	 */
+	Runnable claimed(String name, Runnable task) {
+		Runnable timed = timed(name, task);
+		return () -> {
+			if (claim(name))
+				timed.run();
+		};
+	}
+
+	/**
+	 * Adds the runtime of a run to the history and marks it as finished.
+	 */
+	synchronized void record(String name, double seconds) {
+		try {
+			if (!Files.exists(history))
+				Files.writeString(history, "run\truntime\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+			Files.writeString(history, String.format(Locale.US, "%s\t%.1f\n", name, seconds), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			log.warn("Could not write runtime to {}", history, e);
+		}
+
+		runtimes.put(name, seconds);
+		complete(name);
+	}
+}
@@ -0,0 +1,90 @@
+package org.matsim.episim;
+
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchRunTest {
+
+	@Test
+	public void cartesianProduct() {
+		PreparedRun prepare = BatchRun.prepare(Setup.class, Params.class);
+		assertThat(prepare.runs).hasSize(25);
+	}
+
+	@Test
+	public void latinHypercube() {
+
+		PreparedRun prepare = BatchRun.prepare(Setup.class, Params.class, 5);
+		assertThat(prepare.runs).hasSize(5);
+
+		// each value is used exactly once, because there are as many samples as values
+		for (int i = 0; i < 2; i++) {
+			int idx = i;
+			List<Object> values = prepare.runs.stream().map(r -> r.params.get(idx)).collect(Collectors.toList());
+			assertThat(values).containsExactlyInAnyOrderElementsOf(prepare.parameterValues.get(i));
+		}
+
+		// sample is reproducible
+		assertThat(BatchRun.prepare(Setup.class, Params.class, 5).runs.stream().map(r -> r.params).collect(Collectors.toList()))
+				.isEqualTo(prepare.runs.stream().map(r -> r.params).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void lazyConfigs() {
+
+		PreparedRun prepare = BatchRun.prepare(Setup.class, Params.class);
+		int created = Setup.CREATED.get();
+
+		PreparedRun.Run run = prepare.runs.get(20);
+		assertThat(run.params).containsExactly(0.5, 1);
+		assertThat(Setup.CREATED.get()).isEqualTo(created);
+
+		// config is created once per run
+		assertThat(run.getConfig()).isSameAs(run.getConfig());
+		assertThat(Setup.CREATED.get()).isEqualTo(created + 1);
+	}
+
+	@Test
+	public void groupsCreateNoConfigs() {
+
+		PreparedRun prepare = BatchRun.prepare(Setup.class, Params.class);
+		int created = Setup.CREATED.get();
+
+		List<List<PreparedRun.Run>> groups = prepare.groupByPrefix();
+		assertThat(groups).hasSize(25);
+		assertThat(Setup.CREATED.get()).isEqualTo(created);
+
+		// configs are created once when the runs are executed
+		groups.forEach(group -> group.forEach(PreparedRun.Run::getConfig));
+		groups.forEach(group -> group.forEach(PreparedRun.Run::getConfig));
+		assertThat(Setup.CREATED.get()).isEqualTo(created + 25);
+	}
+
+	public static final class Setup implements BatchRun<Params> {
+
+		private static final AtomicInteger CREATED = new AtomicInteger();
+
+		@Override
+		public Config prepareConfig(int id, Params params) {
+			CREATED.incrementAndGet();
+			return ConfigUtils.createConfig();
+		}
+	}
+
+	public static final class Params {
+
+		@BatchRun.Parameter({0.1, 0.2, 0.3, 0.4, 0.5})
+		double fraction;
+
+		@BatchRun.IntParameter({1, 2, 3, 4, 5})
+		int day;
+
+	}
+}
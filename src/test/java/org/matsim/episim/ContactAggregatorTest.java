@@ -0,0 +1,67 @@
+package org.matsim.episim;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.episim.reporting.EpisimWriter;
+
+import java.io.BufferedWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContactAggregatorTest {
+
+	private StringWriter out;
+	private ContactAggregator aggregator;
+
+	@Before
+	public void setup() {
+		out = new StringWriter();
+		aggregator = new ContactAggregator(EpisimTestUtils.createTestConfig(), new BufferedWriter(out));
+	}
+
+	private EpisimPerson createPerson(String act, Integer age, int district) {
+		EpisimPerson p = EpisimTestUtils.createPerson(act, null);
+		if (age != null)
+			p.getAttributes().putAttribute("age", age);
+
+		p.setDistrictIndex(district);
+		return p;
+	}
+
+	@Test
+	public void tables() throws Exception {
+
+		InfectionEventHandler.EpisimFacility facility = EpisimTestUtils.createFacility();
+
+		EpisimPerson a = createPerson("work_1", 34, 0);
+		EpisimPerson b = createPerson("leisure", 95, 1);
+		EpisimPerson c = createPerson("home", null, -1);
+
+		aggregator.onContact(0, a, b, facility, "", 600, 0);
+		aggregator.onContact(0, a, b, facility, "", 1200, 0);
+		aggregator.onContact(0, c, a, facility, "", 86400 * 2, 0);
+
+		aggregator.write(new EpisimWriter(), 1, List.of("x", "y"));
+		aggregator.getOutput().flush();
+
+		assertThat(out.toString().split("\n"))
+				.containsExactly(
+						"1\tactivity\thome\twork\t1\t172800.0",
+						"1\tactivity\twork\tleis\t2\t1800.0",
+						"1\tage\t30-39\t90+\t2\t1800.0",
+						"1\tage\tunknown\t30-39\t1\t172800.0",
+						"1\tdistrict\tx\t\t2\t1800.0",
+						"1\tduration\thome\t1440\t1\t172800.0",
+						"1\tduration\twork\t15\t1\t600.0",
+						"1\tduration\twork\t30\t1\t1200.0"
+				);
+
+		out.getBuffer().setLength(0);
+		aggregator.write(new EpisimWriter(), 2, List.of("x", "y"));
+		aggregator.getOutput().flush();
+
+		assertThat(out.toString()).isEmpty();
+	}
+}
@@ -0,0 +1,118 @@
+package org.matsim.episim;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultStopCriterionTest {
+
+	private Config config;
+	private EpisimConfigGroup episimConfig;
+
+	@Before
+	public void setup() {
+		config = ConfigUtils.createConfig(new EpisimConfigGroup());
+		episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+	}
+
+	private static EpisimReporting.InfectionReport report(int day, long infected, long recovered, long hospital) {
+		EpisimReporting.InfectionReport report = new EpisimReporting.InfectionReport("total", EpisimUtils.getCorrectedTime(0, day), day);
+		report.nSusceptible = 1000 - infected - recovered;
+		report.nTotalInfected = infected;
+		report.nSeriouslySick = hospital;
+		report.nRecovered = recovered;
+		return report;
+	}
+
+	@Test
+	public void disabled() {
+		DefaultStopCriterion stop = new DefaultStopCriterion(config);
+
+		for (int day = 1; day < 100; day++)
+			assertThat(stop.check(report(day, 900, 0, 500), day)).isNull();
+	}
+
+	@Test
+	public void thresholds() {
+		episimConfig.setStopInfectedFraction(0.5);
+		episimConfig.setStopHospitalCapacity(100);
+		DefaultStopCriterion stop = new DefaultStopCriterion(config);
+
+		assertThat(stop.check(report(1, 400, 0, 100), 1)).isNull();
+		assertThat(stop.check(report(2, 500, 0, 0), 2)).contains("infected fraction");
+		assertThat(stop.check(report(3, 400, 0, 101), 3)).contains("capacity");
+	}
+
+	@Test
+	public void plateau() {
+		episimConfig.setStopPlateauDays(3);
+		DefaultStopCriterion stop = new DefaultStopCriterion(config);
+
+		assertThat(stop.check(report(1, 10, 0, 0), 1)).isNull();
+		assertThat(stop.check(report(2, 10, 5, 0), 2)).isNull();
+		assertThat(stop.check(report(3, 5, 12, 0), 3)).isNull();
+
+		// cumulative infections stay at 17
+		assertThat(stop.check(report(4, 2, 15, 0), 4)).isNull();
+		assertThat(stop.check(report(5, 1, 16, 0), 5)).isNull();
+		assertThat(stop.check(report(6, 0, 17, 0), 6)).contains("no new infections");
+	}
+
+	@Test
+	public void plateauBeforeSeeding() {
+		episimConfig.setStopPlateauDays(3);
+		DefaultStopCriterion stop = new DefaultStopCriterion(config);
+
+		// no infections for the first days
+		for (int day = 1; day < 10; day++)
+			assertThat(stop.check(report(day, 0, 0, 0), day)).isNull();
+
+		assertThat(stop.check(report(10, 1, 0, 0), 10)).isNull();
+		assertThat(stop.check(report(12, 1, 0, 0), 12)).isNull();
+		assertThat(stop.check(report(13, 1, 0, 0), 13)).contains("no new infections");
+	}
+
+	@Test
+	public void incidence() {
+		// 10 new infections within 7 days in a population of 1000
+		episimConfig.setStopIncidence(1000);
+		DefaultStopCriterion stop = new DefaultStopCriterion(config);
+
+		for (int day = 1; day <= 8; day++)
+			assertThat(stop.check(report(day, day, 0, 0), day)).isNull();
+
+		// 12 - 2 on day 9
+		assertThat(stop.check(report(9, 10, 2, 0), 9)).contains("incidence");
+	}
+
+	@Test
+	public void resume() throws IOException {
+		// 50 new infections within 7 days
+		episimConfig.setStopIncidence(5000);
+		DefaultStopCriterion stop = new DefaultStopCriterion(config);
+
+		// 35 new infections within each window
+		for (int day = 1; day <= 9; day++)
+			assertThat(stop.check(report(day, 5 * day, 0, 0), day)).isNull();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		stop.write(new DataOutputStream(bytes));
+
+		DefaultStopCriterion resumed = new DefaultStopCriterion(config);
+		resumed.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertThat(resumed.check(report(10, 50, 0, 0), 10)).isNull();
+
+		// without the previous days all infections are counted
+		assertThat(new DefaultStopCriterion(config).check(report(10, 50, 0, 0), 10)).contains("incidence");
+	}
+}
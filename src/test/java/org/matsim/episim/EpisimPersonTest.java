@@ -2,6 +2,11 @@ package org.matsim.episim;
 
 import org.junit.Test;
 
+import java.io.*;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class EpisimPersonTest {
@@ -39,6 +44,9 @@ public class EpisimPersonTest {
 		EpisimPerson p1 = EpisimTestUtils.createPerson("work", null);
 		EpisimPerson p2 = EpisimTestUtils.createPerson("work", null);
 
+		p1.clearTraceableContractPersons(0);
+		assertThat(p1.getTraceableContactPersons(0)).isEmpty();
+
 		p1.addTraceableContactPerson(p2, 0);
 		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2);
 
@@ -59,5 +67,93 @@ public class EpisimPersonTest {
 		p1.addTraceableContactPerson(p2, 0);
 		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2);
 
+		// flag of the person overrides the shared attribute
+		p2.setTraceable(false);
+		assertThat(p2.isTraceable()).isFalse();
+		assertThat(p2.getAttributes().getAttribute(EpisimPerson.TRACING_ATTR)).isEqualTo(true);
+
+	}
+
+	@Test
+	public void shareTrajectory() {
+
+		PopulationSkeleton skeleton = new PopulationSkeleton();
+
+		EpisimPerson p1 = EpisimTestUtils.createPerson("home", null);
+		EpisimPerson p2 = EpisimTestUtils.createPerson("home", null);
+		EpisimPerson p3 = EpisimTestUtils.createPerson("work", null);
+
+		for (EpisimPerson p : List.of(p1, p2, p3)) {
+			p.addToTrajectory("leisure");
+			p.shareTrajectory(skeleton);
+		}
+
+		assertThat(p1.getTrajectory()).containsExactly("home", "leisure")
+				.isSameAs(p2.getTrajectory())
+				.isNotSameAs(p3.getTrajectory());
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+
+		InfectionEventHandler.EpisimFacility facility = EpisimTestUtils.createFacility();
+		EpisimPerson p1 = EpisimTestUtils.createPerson("work", facility);
+		EpisimPerson p2 = EpisimTestUtils.createPerson("leisure", facility);
+
+		p1.setDiseaseStatus(EpisimUtils.getCorrectedTime(0, 3), EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		p1.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, 4);
+		p1.setFirstFacilityId("home");
+		p1.addTraceableContactPerson(p2, 100);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		p1.write(out);
+		p2.write(out);
+		p1.writeTraceableContacts(out);
+		p2.writeTraceableContacts(out);
+		facility.write(out);
+
+		EpisimPerson r1 = EpisimTestUtils.createPerson("home", null);
+		EpisimPerson r2 = EpisimTestUtils.createPerson("home", null);
+		InfectionEventHandler.EpisimFacility restored = EpisimTestUtils.createFacility();
+
+		Function<String, EpisimPerson> lookup = id -> id.equals(p1.getPersonId().toString()) ? r1 : r2;
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		r1.read(in);
+		r2.read(in);
+		r1.readTraceableContacts(in, lookup);
+		r2.readTraceableContacts(in, lookup);
+		restored.read(in, lookup);
+
+		assertThat(r1.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		assertThat(r1.daysSince(EpisimPerson.DiseaseStatus.infectedButNotContagious, 5)).isEqualTo(2);
+		assertThat(r1.daysSinceQuarantine(5)).isEqualTo(1);
+		assertThat(r1.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
+		assertThat(r1.getTrajectory()).containsExactly("work");
+		assertThat(r1.getFirstFacilityId()).isEqualTo("home");
+		assertThat(r2.getFirstFacilityId()).isNull();
+		assertThat(r1.getTraceableContactPersons(0)).containsExactly(r2);
+		assertThat(r2.getTraceableContactPersons(0)).isEmpty();
+
+		assertThat(restored.getPersons()).containsExactly(r1, r2);
+		assertThat(r1.getCurrentContainer()).isSameAs(restored);
+		assertThat(restored.getContainerEnteringTime(r2.getPersonId())).isEqualTo(0);
+	}
+
+	@Test
+	public void writeAndReadRandom() throws IOException {
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		rnd.nextDouble();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		EpisimUtils.writeRandom(rnd, new DataOutputStream(bytes));
+
+		SplittableRandom restored = new SplittableRandom(2);
+		EpisimUtils.readRandom(restored, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertThat(restored.nextLong()).isEqualTo(rnd.nextLong());
+		assertThat(restored.nextInt(100)).isEqualTo(rnd.nextInt(100));
 	}
 }
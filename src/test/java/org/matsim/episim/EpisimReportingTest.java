@@ -0,0 +1,140 @@
+package org.matsim.episim;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.reporting.EpisimWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimReportingTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EpisimEventBus bus;
+	private EpisimReporting reporting;
+	private List<EpisimPerson> persons;
+
+	@Before
+	public void setup() throws Exception {
+		Config config = ConfigUtils.createConfig(EpisimTestUtils.createTestConfig());
+		config.controler().setOutputDirectory(folder.newFolder().toString());
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		episimConfig.setCheckReportCounts(true);
+
+		bus = new EpisimEventBus();
+		reporting = new EpisimReporting(config, new EpisimWriter(), bus);
+		persons = new ArrayList<>();
+	}
+
+	private EpisimPerson createPerson(String district) {
+		EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+		if (district != null)
+			p.getAttributes().putAttribute("district", district);
+
+		reporting.registerPerson(p);
+		persons.add(p);
+		return p;
+	}
+
+	@Test
+	public void liveCounts() {
+
+		EpisimPerson a = createPerson("a");
+		EpisimPerson b = createPerson("b");
+		EpisimPerson c = createPerson(null);
+		createPerson("a");
+
+		a.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		a.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.contagious);
+		b.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered);
+		b.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, 0);
+		b.setQuarantineStatus(EpisimPerson.QuarantineStatus.full, 0);
+		c.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, 0);
+		c.setQuarantineStatus(EpisimPerson.QuarantineStatus.no, 1);
+
+		// cross check is enabled and would throw an exception
+		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(persons, 1);
+
+		assertThat(reports.keySet()).containsExactly("total", "a", "b", "unknown");
+
+		EpisimReporting.InfectionReport total = reports.get("total");
+		assertThat(total.nTotal()).isEqualTo(4);
+		assertThat(total.nSusceptible).isEqualTo(2);
+		assertThat(total.nContagious).isEqualTo(1);
+		assertThat(total.nTotalInfected).isEqualTo(1);
+		assertThat(total.nRecovered).isEqualTo(1);
+		assertThat(total.nInQuarantine).isEqualTo(1);
+
+		assertThat(reports.get("a").nContagious).isEqualTo(1);
+		assertThat(reports.get("a").nSusceptible).isEqualTo(1);
+		assertThat(reports.get("b").nInQuarantine).isEqualTo(1);
+		assertThat(reports.get("unknown").nInQuarantine).isEqualTo(0);
+	}
+
+	@Test
+	public void susceptiblePool() {
+
+		EpisimPerson a = createPerson("a");
+		EpisimPerson b = createPerson("b");
+		EpisimPerson c = createPerson("a");
+		EpisimPerson d = createPerson("a");
+
+		SusceptiblePool all = reporting.getSusceptiblePool(null);
+		SusceptiblePool inA = reporting.getSusceptiblePool("a");
+
+		assertThat(reporting.getSusceptiblePool("c")).isNull();
+		assertThat(all.size()).isEqualTo(4);
+		assertThat(inA.size()).isEqualTo(3);
+
+		c.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+
+		assertThat(all.size()).isEqualTo(3);
+		assertThat(all.get(0)).isSameAs(a);
+		assertThat(all.get(1)).isSameAs(b);
+		assertThat(all.get(2)).isSameAs(d);
+
+		assertThat(inA.size()).isEqualTo(2);
+		assertThat(inA.get(1)).isSameAs(d);
+
+		EpisimPerson e = createPerson("a");
+		a.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+
+		assertThat(inA.size()).isEqualTo(2);
+		assertThat(inA.get(0)).isSameAs(d);
+		assertThat(inA.get(1)).isSameAs(e);
+
+		// members are kept regardless of their status
+		assertThat(inA.members()).isEqualTo(4);
+		assertThat(inA.member(0)).isSameAs(a);
+		assertThat(inA.member(3)).isSameAs(e);
+	}
+
+	@Test
+	public void listener() {
+
+		List<EpisimPerson.DiseaseStatus> changes = new ArrayList<>();
+		bus.addListener(new EpisimListener() {
+			@Override
+			public void onStatusChange(double now, EpisimPerson person, EpisimPerson.DiseaseStatus status) {
+				changes.add(status);
+			}
+		});
+
+		EpisimPerson a = createPerson("a");
+		a.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		a.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.contagious);
+
+		assertThat(changes).containsExactly(EpisimPerson.DiseaseStatus.infectedButNotContagious, EpisimPerson.DiseaseStatus.contagious);
+	}
+
+}
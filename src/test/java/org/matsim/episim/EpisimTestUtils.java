@@ -94,6 +94,14 @@ public class EpisimTestUtils {
 		return new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
 	}
 
+	/**
+	 * Set the home of a person and register it in the household index.
+	 */
+	public static void addToHousehold(HouseholdIndex households, EpisimPerson p, String homeId) {
+		p.getAttributes().putAttribute("homeId", homeId);
+		households.register(p);
+	}
+
 	/**
 	 * Add persons to a facility.
 	 */
@@ -0,0 +1,45 @@
+package org.matsim.episim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricsServerTest {
+
+	@Test
+	public void serve() throws Exception {
+
+		LiveMetrics metrics = new LiveMetrics();
+		EpisimReporting.InfectionReport report = new EpisimReporting.InfectionReport("total", 86400, 1);
+		report.nSusceptible = 10;
+
+		metrics.update(1, 500, 1_000_000_000L, PerformanceMonitor.DISABLED, Map.of("total", report));
+
+		try (MetricsServer server = new MetricsServer(0)) {
+			server.register("run1", metrics);
+
+			HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + "/metrics").openConnection();
+			assertThat(conn.getResponseCode()).isEqualTo(200);
+
+			JsonNode json;
+			try (InputStream in = conn.getInputStream()) {
+				json = new ObjectMapper().readTree(in);
+			}
+
+			assertThat(json.get("heapUsed").asLong()).isGreaterThan(0);
+
+			JsonNode run = json.get("runs").get("run1");
+			assertThat(run.get("day").asInt()).isEqualTo(1);
+			assertThat(run.get("finished").asBoolean()).isFalse();
+			assertThat(run.get("eventsPerSecond").asDouble()).isEqualTo(500);
+			assertThat(run.get("reports").get("total").get("nSusceptible").asLong()).isEqualTo(10);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.matsim.episim;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.reporting.EpisimWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerformanceMonitorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writeDays() throws Exception {
+
+		Config config = ConfigUtils.createConfig(EpisimTestUtils.createTestConfig());
+		config.controler().setOutputDirectory(folder.getRoot().toString());
+		ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).setWritePerformance(true);
+
+		PerformanceMonitor monitor = new PerformanceMonitor(config, new EpisimWriter());
+		assertThat(monitor.isEnabled()).isTrue();
+
+		monitor.startDay();
+		long start = monitor.start();
+		monitor.stop(PerformanceMonitor.Phase.replay, start);
+		monitor.count(PerformanceMonitor.Counter.contacts, 5);
+		monitor.count(PerformanceMonitor.Counter.infections);
+		monitor.endDay(1);
+
+		monitor.startDay();
+		monitor.count(PerformanceMonitor.Counter.events, 3);
+		monitor.endDay(2);
+
+		monitor.close();
+
+		List<String> lines = Files.readAllLines(Path.of(folder.getRoot().toString(), "performance.tsv"));
+		assertThat(lines).hasSize(3);
+		assertThat(lines.get(0)).isEqualTo(String.join("\t", "day", "total", "replay", "infection", "progression", "reports",
+				"policy", "writer", "events", "contacts", "infections", "rngDraws"));
+		assertThat(lines.get(1)).startsWith("1\t").endsWith("\t0\t5\t1\t0");
+		assertThat(lines.get(2)).startsWith("2\t").endsWith("\t3\t0\t0\t0");
+	}
+
+	@Test
+	public void disabled() {
+		PerformanceMonitor.DISABLED.count(PerformanceMonitor.Counter.events);
+		assertThat(PerformanceMonitor.DISABLED.start()).isEqualTo(0);
+		assertThat(PerformanceMonitor.DISABLED.isEnabled()).isFalse();
+	}
+}
@@ -0,0 +1,162 @@
+package org.matsim.episim;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.facilities.ActivityFacility;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WorkloadAnalysisTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void occupancy() throws Exception {
+
+		WorkloadAnalysis analysis = new WorkloadAnalysis(EpisimTestUtils.createTestConfig());
+
+		InfectionEventHandler.EpisimFacility work = EpisimTestUtils.createFacility();
+		EpisimPerson a = EpisimTestUtils.createPerson("work", work);
+		analysis.enter(work, "work");
+		EpisimPerson b = EpisimTestUtils.createPerson("work", work);
+		analysis.enter(work, "work");
+		EpisimPerson c = EpisimTestUtils.createPerson("work", work);
+		analysis.enter(work, "work");
+
+		analysis.leave(work, "work", 1800);
+		EpisimTestUtils.removePerson(work, a);
+		analysis.leave(work, "work", 3600);
+		EpisimTestUtils.removePerson(work, b);
+		analysis.leave(work, "work", 7200);
+		EpisimTestUtils.removePerson(work, c);
+
+		InfectionEventHandler.EpisimFacility home = EpisimTestUtils.createFacility();
+		EpisimTestUtils.createPerson("home", home);
+		analysis.enter(home, "home");
+		analysis.leave(home, "home", 600);
+
+		Path file = folder.getRoot().toPath().resolve("workload.tsv");
+		analysis.write(file.toString());
+
+		List<String> lines = Files.readAllLines(file);
+		assertThat(lines).containsExactly(
+				"class\tmetric\tbin\tvalue",
+				"work\tcontainers\t\t1",
+				"work\tvisits\t\t3",
+				"work\tpeakOccupancy\t\t3",
+				"work\tpairs\t\t3",
+				"work\tcost\t\t8",
+				"work\toccupancy\t1\t1",
+				"work\toccupancy\t2\t1",
+				"work\toccupancy\t4\t1",
+				"work\tdwell\t30\t1",
+				"work\tdwell\t60\t1",
+				"work\tdwell\t120\t1",
+				"home\tcontainers\t\t1",
+				"home\tvisits\t\t1",
+				"home\tpeakOccupancy\t\t1",
+				"home\tpairs\t\t0",
+				"home\tcost\t\t0",
+				"home\toccupancy\t1\t1",
+				"home\tdwell\t15\t1"
+		);
+	}
+
+	@Test
+	public void handler() throws Exception {
+
+		Config config = ConfigUtils.createConfig(new EpisimConfigGroup());
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		episimConfig.setFacilitiesHandling(EpisimConfigGroup.FacilitiesHandling.snz);
+		episimConfig.setSampleSize(1);
+		episimConfig.setAnalyzeWorkload(true);
+		episimConfig.addContainerParams(new EpisimConfigGroup.InfectionParams("home"));
+		episimConfig.addContainerParams(new EpisimConfigGroup.InfectionParams("work"));
+		config.controler().setOutputDirectory(folder.getRoot().toString());
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		for (String id : List.of("a", "b", "c")) {
+			Person person = scenario.getPopulation().getFactory().createPerson(Id.createPersonId(id));
+			scenario.getPopulation().addPerson(person);
+		}
+
+		// c does not appear in the events and stays at home
+		scenario.getPopulation().getPersons().get(Id.createPersonId("c")).getAttributes().putAttribute("homeId", "h2");
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(Config.class).toInstance(config);
+				bind(Scenario.class).toInstance(scenario);
+			}
+		}));
+
+		InfectionEventHandler handler = injector.getInstance(InfectionEventHandler.class);
+
+		for (int day = 0; day <= 1; day++) {
+			handler.reset(day);
+
+			double offset = day * 24 * 3600;
+			handler.handleEvent(new ActivityEndEvent(offset + 8 * 3600, Id.createPersonId("a"), null, facility("h1"), "home"));
+			handler.handleEvent(new ActivityStartEvent(offset + 8.5 * 3600, Id.createPersonId("a"), null, facility("w"), "work", null));
+			handler.handleEvent(new ActivityEndEvent(offset + 9 * 3600, Id.createPersonId("b"), null, facility("h1"), "home"));
+			handler.handleEvent(new ActivityStartEvent(offset + 9.5 * 3600, Id.createPersonId("b"), null, facility("w"), "work", null));
+			handler.handleEvent(new ActivityEndEvent(offset + 16 * 3600, Id.createPersonId("b"), null, facility("w"), "work"));
+			handler.handleEvent(new ActivityStartEvent(offset + 17 * 3600, Id.createPersonId("b"), null, facility("h1"), "home", null));
+			handler.handleEvent(new ActivityEndEvent(offset + 17 * 3600, Id.createPersonId("a"), null, facility("w"), "work"));
+			handler.handleEvent(new ActivityStartEvent(offset + 18 * 3600, Id.createPersonId("a"), null, facility("h1"), "home", null));
+		}
+
+		Path file = folder.getRoot().toPath().resolve("workload.tsv");
+		assertThat(file).doesNotExist();
+
+		handler.reset(2);
+
+		// the night at home is split into the stay until the first activity ends and the stay until the end of the day
+		List<String> lines = Files.readAllLines(file);
+		assertThat(lines).containsExactly(
+				"class\tmetric\tbin\tvalue",
+				"home\tcontainers\t\t2",
+				"home\tvisits\t\t5",
+				"home\tpeakOccupancy\t\t2",
+				"home\tpairs\t\t2",
+				"home\tcost\t\t6",
+				"home\toccupancy\t1\t3",
+				"home\toccupancy\t2\t2",
+				"home\tdwell\t480\t2",
+				"home\tdwell\t960\t2",
+				"home\tdwell\t1440\t1",
+				"work\tcontainers\t\t1",
+				"work\tvisits\t\t2",
+				"work\tpeakOccupancy\t\t2",
+				"work\tpairs\t\t1",
+				"work\tcost\t\t3",
+				"work\toccupancy\t1\t1",
+				"work\toccupancy\t2\t1",
+				"work\tdwell\t480\t1",
+				"work\tdwell\t960\t1"
+		);
+	}
+
+	private static Id<ActivityFacility> facility(String id) {
+		return Id.create(id, ActivityFacility.class);
+	}
+}
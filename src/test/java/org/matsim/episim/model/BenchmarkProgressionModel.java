@@ -0,0 +1,87 @@
+package org.matsim.episim.model;
+
+import org.matsim.episim.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Benchmarks the daily state update over a synthetic population that covers all disease states.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkProgressionModel {
+
+	/**
+	 * Number of days until all persons have recovered.
+	 */
+	private static final int DAYS = 50;
+
+	@Param({"10000"})
+	private int size;
+
+	private EpisimReporting reporting;
+	private TracingConfigGroup tracingConfig;
+	private ProgressionModel model;
+	private List<EpisimPerson> persons;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkProgressionModel.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(20).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() {
+		// stub only, otherwise all invocations are recorded
+		reporting = mock(EpisimReporting.class, withSettings().stubOnly());
+		tracingConfig = new TracingConfigGroup();
+		tracingConfig.setPutTraceablePersonsInQuarantineAfterDay(0);
+	}
+
+	@Setup(Level.Invocation)
+	public void population() {
+
+		model = new DefaultProgressionModel(new SplittableRandom(1), new EpisimConfigGroup(), tracingConfig, new HouseholdIndex());
+		persons = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+
+			// a quarter stays susceptible, the others are infected on different days
+			if (i % 4 != 0)
+				p.setDiseaseStatus((i % 25) * 86400d, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+
+			persons.add(p);
+		}
+	}
+
+	@Benchmark
+	public void updateState() {
+
+		for (int day = 0; day < DAYS; day++) {
+			for (EpisimPerson p : persons) {
+				model.updateState(p, day);
+			}
+		}
+	}
+
+}
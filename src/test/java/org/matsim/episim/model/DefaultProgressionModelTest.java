@@ -14,12 +14,14 @@ public class DefaultProgressionModelTest {
 	private EpisimReporting reporting;
 	private ProgressionModel model;
 	private TracingConfigGroup tracingConfig;
+	private HouseholdIndex households;
 
 	@Before
 	public void setup() {
 		reporting = mock(EpisimReporting.class);
 		tracingConfig = new TracingConfigGroup();
-		model = new DefaultProgressionModel(new SplittableRandom(1), new EpisimConfigGroup(), tracingConfig);
+		households = new HouseholdIndex();
+		model = new DefaultProgressionModel(new SplittableRandom(1), new EpisimConfigGroup(), tracingConfig, households);
 	}
 
 	@Test
@@ -112,15 +114,20 @@ public class DefaultProgressionModelTest {
 			model.updateState(p, day);
 		}
 
-		p.getAttributes().putAttribute("homeId", "1");
+		EpisimTestUtils.addToHousehold(households, p, "1");
 
 		EpisimPerson contact = EpisimTestUtils.createPerson(reporting);
-		contact.getAttributes().putAttribute("homeId", "1");
+		EpisimTestUtils.addToHousehold(households, contact, "1");
+
+		// household member that was never recorded as contact
+		EpisimPerson member = EpisimTestUtils.createPerson(reporting);
+		EpisimTestUtils.addToHousehold(households, member, "1");
 
 		p.addTraceableContactPerson(contact, 5 * 24 * 3600);
 
 		model.updateState(p, 6);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.no);
+		assertThat(member.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.no);
 
 		// person is traced one day later when activated
 
@@ -129,6 +136,7 @@ public class DefaultProgressionModelTest {
 
 		model.updateState(p, 7);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome);
+		assertThat(member.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
 
 
 	}
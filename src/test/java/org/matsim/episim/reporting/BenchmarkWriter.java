@@ -0,0 +1,108 @@
+package org.matsim.episim.reporting;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of appending csv rows with the different writers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkWriter {
+
+	/**
+	 * Rows written between two durability points.
+	 */
+	private static final int ROWS_PER_DAY = 1000;
+
+	@Param({"flushEachRow", "sync", "async"})
+	private String type;
+
+	private Path dir;
+	private EpisimWriter writer;
+	private BufferedWriter out;
+	private String[] row;
+	private int n;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkWriter.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("benchmark");
+		row = new String[]{"86400.0", "1234567", "7654321", "home_leisure"};
+
+		switch (type) {
+			case "flushEachRow":
+				writer = new FlushEachRowWriter();
+				break;
+			case "sync":
+				writer = new EpisimWriter();
+				break;
+			case "async":
+				writer = new AsyncEpisimWriter(true);
+				break;
+			default:
+				throw new IllegalStateException("Unknown writer " + type);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void open() throws IOException {
+		out = writer instanceof FlushEachRowWriter ? IOUtils.getBufferedWriter(Files.createTempFile(dir, "rows", ".txt").toString())
+				: EpisimWriter.prepare(Files.createTempFile(dir, "rows", ".txt").toString(), "time", "infector", "infected", "infectionType");
+	}
+
+	@TearDown(Level.Iteration)
+	public void close() {
+		writer.close(out);
+	}
+
+	@Benchmark
+	public void append() {
+		writer.append(out, row);
+
+		if (++n % ROWS_PER_DAY == 0)
+			writer.flush(out);
+	}
+
+	/**
+	 * Behaviour of the writer before rows were buffered, which flushed after every row.
+	 */
+	private static final class FlushEachRowWriter extends EpisimWriter {
+
+		@Override
+		public void append(BufferedWriter writer, String[] array) {
+			try {
+				writer.write(JOINER.join(array));
+				writer.write("\n");
+				writer.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.facilities.ActivityFacility;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BinaryEventWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String toXml(List<Event> events) throws IOException {
+		StringBuilder b = new StringBuilder();
+		for (Event event : events) {
+			EpisimWriter.writeEvent(b, event);
+		}
+		return b.toString();
+	}
+
+	static List<Event> createEvents(int n) {
+
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			double time = 86400 + i * 3;
+			Id<org.matsim.api.core.v01.population.Person> p = Id.createPersonId("p" + (i % 50));
+
+			switch (i % 7) {
+				case 0:
+					events.add(new ActivityStartEvent(time, p, Id.createLinkId("l" + i), Id.create("f" + (i % 10), ActivityFacility.class), "home",
+							i % 2 == 0 ? new Coord(i, -0.5 * i) : null));
+					break;
+				case 1:
+					events.add(new ActivityEndEvent(time, p, Id.createLinkId("l" + i), null, "work_<1>"));
+					break;
+				case 2:
+					events.add(new PersonEntersVehicleEvent(time, p, Id.createVehicleId("v1")));
+					break;
+				case 3:
+					events.add(new PersonLeavesVehicleEvent(time, p, Id.createVehicleId("v1")));
+					break;
+				case 4:
+					events.add(new EpisimContactEvent(time + 0.25, p, Id.createPersonId("c"), Id.create("f1", ActivityFacility.class),
+							"leisure", 1800.5, i % 3 == 0 ? -1 : 0.001 * i));
+					break;
+				case 5:
+					events.add(new EpisimInfectionEvent(time, p, Id.createPersonId("c"), Id.createVehicleId("v1"), "pt_home"));
+					break;
+				default:
+					events.add(new EpisimPersonStatusEvent(time - 2 * 86400, p, EpisimPerson.DiseaseStatus.values()[i % 7]));
+			}
+		}
+
+		return events;
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+
+		Path file = folder.getRoot().toPath().resolve("day_001.bin");
+		List<Event> events = createEvents(BinaryEventWriter.BLOCK_SIZE * 2 + 100);
+
+		try (BinaryEventWriter writer = new BinaryEventWriter(file, 1)) {
+			for (Event event : events) {
+				writer.write(event);
+			}
+		}
+
+		List<Event> read = new ArrayList<>();
+		try (BinaryEventReader reader = new BinaryEventReader(file)) {
+			assertThat(reader.getDay()).isEqualTo(1);
+			reader.readEvents(read::add);
+		}
+
+		assertThat(read).hasSameSizeAs(events);
+		assertThat(toXml(read)).isEqualTo(toXml(events));
+
+		// skip first blocks using the index
+		double from = events.get(BinaryEventWriter.BLOCK_SIZE + 10).getTime();
+		List<Event> later = new ArrayList<>();
+		BinaryEventReader.readEvents(file, e -> {
+			if (e.getTime() >= from) later.add(e);
+		});
+
+		List<Event> skipped = new ArrayList<>();
+		try (BinaryEventReader reader = new BinaryEventReader(file)) {
+			reader.readEvents(from, skipped::add);
+		}
+
+		assertThat(toXml(skipped)).isEqualTo(toXml(later));
+	}
+
+	@Test
+	public void empty() throws IOException {
+
+		Path file = folder.getRoot().toPath().resolve("day_002.bin");
+		new BinaryEventWriter(file, 2).close();
+
+		List<Event> read = new ArrayList<>();
+		BinaryEventReader.readEvents(file, read::add);
+		assertThat(read).isEmpty();
+	}
+
+}
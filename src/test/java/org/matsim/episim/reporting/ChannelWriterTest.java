@@ -0,0 +1,40 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChannelWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void utf8() throws IOException {
+
+		Path file = folder.getRoot().toPath().resolve("out.txt");
+
+		StringBuilder expected = new StringBuilder();
+		try (ChannelWriter writer = new ChannelWriter(file)) {
+			for (int i = 0; i < 20000; i++) {
+				String s = i + "\täöü😀\n";
+				// split the surrogate pair between two writes
+				writer.write(s, 0, s.length() - 2);
+				writer.write(s, s.length() - 2, 2);
+				expected.append(s);
+
+				if (i % 1000 == 0) writer.flush();
+			}
+		}
+
+		assertThat(Files.readString(file, StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+	}
+
+}
@@ -0,0 +1,50 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.events.Event;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventSerializerTest {
+
+	@Test
+	public void identical() throws IOException {
+
+		for (Event event : BinaryEventWriterTest.createEvents(500)) {
+
+			StringBuilder expected = new StringBuilder();
+			EpisimWriter.writeAttributes(expected, event);
+
+			StringBuilder actual = new StringBuilder();
+			assertThat(EventSerializer.write(actual, event)).isTrue();
+
+			StringWriter writer = new StringWriter();
+			EpisimWriter.writeEvent(writer, event);
+
+			assertThat(actual.toString()).isEqualTo(expected.toString());
+			assertThat(writer.toString()).isEqualTo(expected.toString());
+		}
+	}
+
+	@Test
+	public void doubles() throws IOException {
+
+		double[] values = {0, -0.0, 1, -1, 0.5, 86400, 86400.25, 1e7 - 1, 1e7, -1e7, 1e-4, 123456789.0,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE};
+
+		for (double v : values) {
+			StringBuilder b = new StringBuilder();
+			EventSerializer.writeDouble(b, v);
+
+			StringWriter w = new StringWriter();
+			EventSerializer.writeDouble(w, v);
+
+			assertThat(b.toString()).isEqualTo(Double.toString(v));
+			assertThat(w.toString()).isEqualTo(Double.toString(v));
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InputPositionWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTrip() throws IOException {
+
+		Path file = folder.newFile("day_001.pos").toPath();
+		long[] positions = {0, 0, 1, 127, 128, 128, 20_000, 5_000_000_000L};
+
+		try (InputPositionWriter writer = new InputPositionWriter(file)) {
+			for (long p : positions)
+				writer.write(p);
+
+			assertThatThrownBy(() -> writer.write(3))
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+
+		assertThat(InputPositionWriter.read(file)).containsExactly(positions);
+	}
+
+	@Test
+	public void empty() throws IOException {
+
+		Path file = folder.newFile("day_002.pos").toPath();
+		new InputPositionWriter(file).close();
+
+		assertThat(InputPositionWriter.read(file)).isEmpty();
+	}
+}
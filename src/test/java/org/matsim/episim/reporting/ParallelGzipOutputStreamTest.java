@@ -0,0 +1,49 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelGzipOutputStreamTest {
+
+	@Test
+	public void multipleMembers() throws IOException {
+
+		// not a multiple of the block size
+		byte[] data = new byte[ParallelGzipOutputStream.BLOCK_SIZE * 5 + 1234];
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ('a' + rnd.nextInt(8));
+		}
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(bos, 2)) {
+			out.write(data, 0, 1000);
+			out.flush();
+			out.write(data[1000]);
+			out.write(data, 1001, data.length - 1001);
+		}
+
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+			assertThat(in.readAllBytes()).isEqualTo(data);
+		}
+	}
+
+	@Test
+	public void empty() throws IOException {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		new ParallelGzipOutputStream(bos, 1).close();
+
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+			assertThat(in.readAllBytes()).isEmpty();
+		}
+	}
+
+}
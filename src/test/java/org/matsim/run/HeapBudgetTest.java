@@ -0,0 +1,101 @@
+package org.matsim.run;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.episim.LiveMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HeapBudgetTest {
+
+	private final AtomicLong used = new AtomicLong();
+	private final Map<LiveMetrics, Integer> days = new HashMap<>();
+
+	@Before
+	public void setup() {
+		used.set(100);
+		days.clear();
+	}
+
+	private HeapBudget create(long budget, int maxRuns) {
+		return new HeapBudget(budget, maxRuns, used::get, m -> days.getOrDefault(m, 0));
+	}
+
+	@Test
+	public void pilot() {
+
+		HeapBudget budget = create(300, 10);
+		LiveMetrics pilot = new LiveMetrics();
+
+		assertThat(budget.tryAcquire(pilot, 1)).isTrue();
+
+		// no other run before the pilot was measured
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+
+		days.put(pilot, 1);
+		used.set(150);
+
+		// measures 50 per run
+		budget.acquire(new LiveMetrics(), 1);
+
+		LiveMetrics ensemble = new LiveMetrics();
+		assertThat(budget.tryAcquire(ensemble, 2)).isTrue();
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+
+		budget.release(ensemble, 2);
+		assertThat(budget.tryAcquire(new LiveMetrics(), 2)).isTrue();
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+	}
+
+	@Test
+	public void releaseWithoutMeasurement() {
+
+		HeapBudget budget = create(300, 10);
+		LiveMetrics pilot = new LiveMetrics();
+
+		assertThat(budget.tryAcquire(pilot, 1)).isTrue();
+		budget.release(pilot, 1);
+
+		// next run becomes the pilot
+		LiveMetrics next = new LiveMetrics();
+		assertThat(budget.tryAcquire(next, 1)).isTrue();
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+
+		// day of the old pilot is not relevant anymore
+		days.put(pilot, 1);
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+
+		days.put(next, 1);
+		used.set(200);
+		budget.acquire(new LiveMetrics(), 1);
+
+		// 100 + 3 * 100 would exceed the budget
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+	}
+
+	@Test
+	public void maxRuns() {
+
+		HeapBudget budget = create(10_000, 2);
+		LiveMetrics pilot = new LiveMetrics();
+
+		assertThat(budget.tryAcquire(pilot, 1)).isTrue();
+		days.put(pilot, 1);
+		used.set(110);
+
+		budget.acquire(new LiveMetrics(), 1);
+		assertThat(budget.tryAcquire(new LiveMetrics(), 1)).isFalse();
+	}
+
+	@Test
+	public void disabled() {
+
+		HeapBudget budget = create(0, 1);
+		for (int i = 0; i < 5; i++)
+			assertThat(budget.tryAcquire(new LiveMetrics(), 2)).isTrue();
+	}
+}
@@ -2,20 +2,27 @@ package org.matsim.run;
 
 import com.google.common.collect.Lists;
 import com.google.inject.*;
+import com.google.inject.util.Modules;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimModule;
 import org.matsim.episim.EpisimRunner;
+import org.matsim.episim.ReplayHandler;
 import org.matsim.episim.TracingConfigGroup;
 import org.matsim.episim.policy.FixedPolicy;
+import org.matsim.episim.reporting.MergedEventReader;
 import org.matsim.run.modules.OpenBerlinScenario;
 import org.matsim.testcases.MatsimTestUtils;
 
@@ -23,6 +30,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -103,6 +111,123 @@ public class RunEpisimIntegrationTest {
 				.isNotEqualTo(cmpLines.subList(tDay, Math.min(it, cmpLines.size())));
 	}
 
+	@Test
+	public void testCheckpoint() throws IOException {
+
+		int day = it / 2 + 1;
+
+		createRunner(day).run(it);
+		assertThat(Path.of(utils.getOutputDirectory(), "checkpoints", String.format("day_%03d.bin.gz", day))).exists();
+
+		// continued output needs to be identical to the base case
+		assertThat(createRunner(day).resumeFromCheckpoint(it)).isTrue();
+	}
+
+	@Test
+	public void testEnsemble() throws IOException {
+
+		Injector base = Guice.createInjector(new EpisimModule(), new TestScenario(utils));
+
+		// second run with a different seed, which uses the same replay
+		Injector other = Guice.createInjector(Modules.override(new EpisimModule(), new TestScenario(utils))
+				.with(binder -> binder.bind(ReplayHandler.class).toInstance(base.getInstance(ReplayHandler.class))));
+
+		Config config = other.getInstance(Config.class);
+		config.global().setRandomSeed(config.global().getRandomSeed() + 1);
+		config.controler().setOutputDirectory(utils.getOutputDirectory() + "other");
+
+		// output of the first run needs to be identical to the base case
+		EpisimRunner.runEnsemble(List.of(base.getInstance(EpisimRunner.class), other.getInstance(EpisimRunner.class)), it);
+
+		// the second run needs to be identical to the same run executed on its own
+		Injector single = Guice.createInjector(new EpisimModule(), new TestScenario(utils));
+		Config singleConfig = single.getInstance(Config.class);
+		singleConfig.global().setRandomSeed(config.global().getRandomSeed());
+		singleConfig.controler().setOutputDirectory(utils.getOutputDirectory() + "single");
+
+		single.getInstance(EpisimRunner.class).run(it);
+
+		for (String name : List.of("infections.txt", "infectionEvents.txt")) {
+			Path expected = Path.of(utils.getOutputDirectory() + "single", name);
+			assertThat(expected).exists();
+			assertThat(Files.readAllLines(Path.of(utils.getOutputDirectory() + "other", name)))
+					.isEqualTo(Files.readAllLines(expected));
+		}
+	}
+
+	@Test
+	public void testMergedEvents() throws IOException {
+
+		// the full event stream is large, so only the first days are compared
+		int days = Math.min(it, 2);
+
+		Injector reference = Guice.createInjector(new EpisimModule(), new TestScenario(utils));
+		reference.getInstance(EpisimConfigGroup.class).setWriteEvents(EpisimConfigGroup.WriteEvents.reference);
+
+		// same run writing all events, which uses the same replay
+		Injector all = Guice.createInjector(Modules.override(new EpisimModule(), new TestScenario(utils))
+				.with(binder -> binder.bind(ReplayHandler.class).toInstance(reference.getInstance(ReplayHandler.class))));
+
+		all.getInstance(EpisimConfigGroup.class).setWriteEvents(EpisimConfigGroup.WriteEvents.all);
+		all.getInstance(Config.class).controler().setOutputDirectory(utils.getOutputDirectory() + "all");
+
+		// output of the reference run needs to be identical to the base case
+		reference.getInstance(EpisimRunner.class).run(it);
+		all.getInstance(EpisimRunner.class).run(days);
+
+		MergedEventReader reader = new MergedEventReader(Path.of(utils.getOutputDirectory(), "events", MergedEventReader.MANIFEST),
+				reference.getInstance(Scenario.class));
+
+		for (int day = 1; day <= days; day++) {
+
+			List<String> merged = new ArrayList<>();
+			reader.readEvents(day, event -> merged.add(event.getAttributes().toString()));
+
+			List<String> expected = new ArrayList<>();
+			EventsManager manager = EventsUtils.createEventsManager();
+			manager.addHandler((BasicEventHandler) event -> expected.add(event.getAttributes().toString()));
+			EventsUtils.readEvents(manager, Path.of(utils.getOutputDirectory() + "all", "events", String.format("day_%03d.xml.gz", day)).toString());
+
+			assertThat(merged).as("Events of day %d", day)
+					.isNotEmpty()
+					.isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testCheckpointIncidence() throws IOException {
+
+		// above the 7-day incidence of the base case, but below the incidence of all infections since the start,
+		// which would be computed if the window of previous days was lost when resuming
+		double incidence = it == 10 ? 92 : 50_000;
+		int day = it / 2 + 1;
+
+		createRunner(day, incidence).run(it);
+		assertThat(Path.of(utils.getOutputDirectory(), "stopped.txt")).doesNotExist();
+
+		// continued output needs to be identical to the base case
+		assertThat(createRunner(day, incidence).resumeFromCheckpoint(it)).isTrue();
+		assertThat(Path.of(utils.getOutputDirectory(), "stopped.txt")).doesNotExist();
+	}
+
+	/**
+	 * Creates a new runner writing checkpoints with the given interval, which is read on creation.
+	 */
+	private EpisimRunner createRunner(int checkpointInterval) {
+		return createRunner(checkpointInterval, 0);
+	}
+
+	/**
+	 * Creates a new runner writing checkpoints, which stops at the given 7-day incidence.
+	 */
+	private EpisimRunner createRunner(int checkpointInterval, double stopIncidence) {
+		Injector injector = Guice.createInjector(new EpisimModule(), new TestScenario(utils));
+		EpisimConfigGroup episimConfig = injector.getInstance(EpisimConfigGroup.class);
+		episimConfig.setCheckpointInterval(checkpointInterval);
+		episimConfig.setStopIncidence(stopIncidence);
+		return injector.getInstance(EpisimRunner.class);
+	}
+
 	@Test
 	public void testNoPt() throws IOException {
 
@@ -0,0 +1,85 @@
+package org.matsim.run;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TaskSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void longestFirst() throws IOException {
+
+		Path history = folder.getRoot().toPath().resolve("runtimes.tsv");
+
+		TaskScheduler scheduler = new TaskScheduler(history, null, false);
+		scheduler.record("a", 10);
+		scheduler.record("b", 100);
+		scheduler.record("c", 50);
+		scheduler.record("a", 20);
+
+		// history is read again
+		scheduler = new TaskScheduler(history, null, false);
+
+		assertThat(scheduler.estimate("a")).isEqualTo(20);
+		assertThat(scheduler.sort(List.of("a", "b", "c", "d"), List::of))
+				.containsExactly("d", "b", "c", "a");
+	}
+
+	@Test
+	public void claim() throws IOException {
+
+		Path queue = folder.getRoot().toPath().resolve("queue");
+
+		TaskScheduler first = new TaskScheduler(folder.getRoot().toPath().resolve("runtimes.tsv"), queue, false);
+		TaskScheduler second = new TaskScheduler(folder.getRoot().toPath().resolve("runtimes.tsv"), queue, false);
+
+		assertThat(first.claim("a")).isTrue();
+		assertThat(second.claim("a")).isFalse();
+		assertThat(second.claim("b")).isTrue();
+
+		int[] executed = new int[1];
+		first.claimed("b", () -> executed[0]++).run();
+		second.claimed("c", () -> executed[0]++).run();
+
+		assertThat(executed[0]).isEqualTo(1);
+		assertThat(first.isCompleted("c")).isTrue();
+		assertThat(first.isCompleted("b")).isFalse();
+	}
+
+	@Test
+	public void resume() throws IOException {
+
+		Path history = folder.getRoot().toPath().resolve("runtimes.tsv");
+		Path queue = folder.getRoot().toPath().resolve("queue");
+
+		TaskScheduler interrupted = new TaskScheduler(history, queue, false);
+		interrupted.claimed("a", () -> {}).run();
+		assertThat(interrupted.claim("b")).isTrue();
+		assertThat(interrupted.claim("c")).isTrue();
+
+		// lock of b was not touched since the worker stopped
+		Files.setLastModifiedTime(queue.resolve("b.lock"), FileTime.from(Instant.now().minus(TaskScheduler.LEASE.multipliedBy(2))));
+
+		TaskScheduler resumed = new TaskScheduler(history, queue, true);
+		TaskScheduler other = new TaskScheduler(history, queue, true);
+
+		assertThat(resumed.claim("a")).isFalse();
+		assertThat(resumed.claim("c")).isFalse();
+		assertThat(resumed.claim("b")).isTrue();
+		assertThat(other.claim("b")).isFalse();
+
+		assertThat(new TaskScheduler(history, queue, false).claim("b")).isFalse();
+	}
+}